@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.Histogram;
+import io.victoriametrics.client.metrics.MetricFamily;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.metrics.SettableGauge;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a scrape of a registry with many counters, gauges and histograms,
+ * serialized into a {@link Writer} and into an {@link OutputStream}.
+ *
+ * <p>Both paths encode UTF-8 into a discarding stream, so {@code gc.alloc.rate.norm} reported by the GC profiler
+ * is the garbage produced by a single scrape.</p>
+ */
+@State(Scope.Benchmark)
+public class ExpositionBenchmark {
+
+    @Param({"10000", "100000"})
+    public int seriesCount;
+
+    private MetricRegistry registry;
+    private Writer writer;
+    private OutputStream out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = MetricRegistry.create();
+        MetricFamily<Counter> requests =
+                registry.createCounterFamily("requests_total", "method", "path");
+        MetricFamily<SettableGauge> inflight =
+                registry.createSettableGaugeFamily("requests_inflight", "path");
+        MetricFamily<Histogram> latency = registry.createHistogramFamily("request_duration_seconds", "path");
+
+        Random random = new Random(42);
+        for (int i = 0; i < seriesCount; i++) {
+            String path = "/api/v1/resource/" + i;
+            if (i % 10 == 0) {
+                Histogram histogram = latency.labels(path);
+                for (int j = 0; j < 20; j++) {
+                    histogram.update(random.nextDouble() * 2);
+                }
+            } else if (i % 2 == 0) {
+                inflight.labels(path).set(random.nextDouble() * 100);
+            } else {
+                requests.labels("GET", path).inc(random.nextInt(1_000_000));
+            }
+        }
+
+        out = OutputStream.nullOutputStream();
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writerBenchmark() throws IOException {
+        registry.write(writer);
+        writer.flush();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void outputStreamBenchmark() {
+        registry.write(out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ExpositionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.HistogramBuckets;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the table-based bucket lookup of a histogram with the logarithm-based one.
+ */
+@State(Scope.Benchmark)
+public class HistogramBucketsBenchmark {
+
+    private static final int VALUES_COUNT = 1024;
+
+    private final double[] values = new double[VALUES_COUNT];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES_COUNT; i++) {
+            // log-uniform values covering all buckets and both out of range buckets
+            values[i] = Math.pow(10, random.nextDouble() * 32 - 12);
+        }
+
+        for (int i = 0; i < 10_000_000; i++) {
+            double value = i < VALUES_COUNT ? values[i] : Math.pow(10, random.nextDouble() * 32 - 12);
+            int expected = HistogramBuckets.slotOfLog10(value);
+            int actual = HistogramBuckets.slotOf(value);
+            if (expected != actual) {
+                throw new IllegalStateException("Bucket mismatch for " + value + ": " + actual + " != " + expected);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(VALUES_COUNT)
+    public int log10SlotBenchmark() {
+        int result = 0;
+        for (double value : values) {
+            result += HistogramBuckets.slotOfLog10(value);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(VALUES_COUNT)
+    public int tableSlotBenchmark() {
+        int result = 0;
+        for (double value : values) {
+            result += HistogramBuckets.slotOf(value);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HistogramBucketsBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(4)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap taken by a single histogram series in each storage mode.
+ *
+ * <p>Every invocation creates a histogram and records typical request latencies into it,
+ * so {@code gc.alloc.rate.norm} reported by the GC profiler is the heap size of a series in bytes.</p>
+ */
+@State(Scope.Thread)
+public class HistogramMemoryBenchmark {
+
+    @Param
+    public Histogram.Mode mode;
+
+    private final double[] latencies = new double[128];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < latencies.length; i++) {
+            // latencies from 1ms to 10s
+            latencies[i] = Math.pow(10, random.nextDouble() * 4 - 3);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Histogram histogramSeriesBenchmark() {
+        Histogram histogram = new Histogram("request_duration_seconds", mode);
+        histogram.update(latencies, 0, latencies.length);
+        return histogram;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HistogramMemoryBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(4)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
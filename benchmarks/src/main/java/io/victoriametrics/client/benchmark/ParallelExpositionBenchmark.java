@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.Histogram;
+import io.victoriametrics.client.metrics.MetricFamily;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.metrics.SettableGauge;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render time of a scrape of a very large registry, serialized on the calling thread
+ * and in parallel shards on the common fork-join pool.
+ */
+@State(Scope.Benchmark)
+public class ParallelExpositionBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int seriesCount;
+
+    private MetricRegistry registry;
+    private OutputStream out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = MetricRegistry.create();
+        MetricFamily<Counter> requests = registry.createCounterFamily("requests_total", "method", "path");
+        MetricFamily<SettableGauge> inflight = registry.createSettableGaugeFamily("requests_inflight", "path");
+        MetricFamily<Histogram> latency = registry.createHistogramFamily("request_duration_seconds", "path");
+
+        Random random = new Random(42);
+        for (int i = 0; i < seriesCount; i++) {
+            String path = "/api/v1/resource/" + i;
+            if (i % 100 == 0) {
+                Histogram histogram = latency.labels(path);
+                for (int j = 0; j < 20; j++) {
+                    histogram.update(random.nextDouble() * 2);
+                }
+            } else if (i % 2 == 0) {
+                inflight.labels(path).set(random.nextDouble() * 100);
+            } else {
+                requests.labels("GET", path).inc(random.nextInt(1_000_000));
+            }
+        }
+
+        out = OutputStream.nullOutputStream();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void sequentialBenchmark() {
+        registry.write(out);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parallelBenchmark() {
+        registry.writeParallel(out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ParallelExpositionBenchmark.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.MetricFamily;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving a counter by name in a registry with many series.
+ *
+ * <p>A hit looks up an existing series, a miss validates a new name and registers a new series.
+ * Misses are measured in batches of {@link #MISS_BATCH} new names on a fresh registry.</p>
+ */
+@State(Scope.Benchmark)
+public class RegistryLookupBenchmark {
+
+    private static final int MISS_BATCH = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int seriesCount;
+
+    private MetricRegistry registry;
+    private MetricFamily<Counter> family;
+    private String[] names;
+    private String[] paths;
+    private String[] missNames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setupNames() {
+        names = new String[seriesCount];
+        paths = new String[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            paths[i] = "/api/v1/resource/" + i;
+            names[i] = "requests_total{method=\"GET\", path=\"" + paths[i] + "\"}";
+        }
+
+        missNames = new String[MISS_BATCH];
+        for (int i = 0; i < MISS_BATCH; i++) {
+            missNames[i] = "requests_total{method=\"POST\", path=\"/api/v1/resource/" + i + "\"}";
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupRegistry() {
+        registry = MetricRegistry.create();
+        family = registry.createCounterFamily("requests_total", "method", "path");
+        for (int i = 0; i < seriesCount; i++) {
+            registry.getOrCreateCounter(names[i]);
+            family.labels("GET", paths[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next + 1;
+        next = index == seriesCount ? 0 : index;
+        return next;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Counter lookupHitBenchmark() {
+        return registry.getOrCreateCounter(names[nextIndex()]);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Counter familyLookupHitBenchmark() {
+        return family.labels("GET", paths[nextIndex()]);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.SingleShotTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void lookupMissBenchmark() {
+        for (String name : missNames) {
+            registry.getOrCreateCounter(name);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RegistryLookupBenchmark.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
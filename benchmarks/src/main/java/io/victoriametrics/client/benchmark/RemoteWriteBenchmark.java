@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.benchmark;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.Histogram;
+import io.victoriametrics.client.metrics.MetricFamily;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.metrics.SettableGauge;
+import io.victoriametrics.client.serialization.RemoteWriteSerializationStrategy;
+import io.victoriametrics.client.utils.GzipOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Cost of encoding a push body of a registry as gzip-compressed Prometheus text
+ * and as a snappy-compressed remote write request.
+ *
+ * <p>Sizes of the bodies are printed once per trial, so the report compares both CPU time and bytes on the wire.</p>
+ */
+@State(Scope.Benchmark)
+public class RemoteWriteBenchmark {
+
+    @Param({"10000", "100000"})
+    public int seriesCount;
+
+    private MetricRegistry registry;
+    private RemoteWriteSerializationStrategy remoteWrite;
+    private ByteArrayOutputStream out;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        registry = MetricRegistry.create();
+        MetricFamily<Counter> requests =
+                registry.createCounterFamily("requests_total", "method", "path");
+        MetricFamily<SettableGauge> inflight =
+                registry.createSettableGaugeFamily("requests_inflight", "path");
+        MetricFamily<Histogram> latency = registry.createHistogramFamily("request_duration_seconds", "path");
+
+        Random random = new Random(42);
+        for (int i = 0; i < seriesCount; i++) {
+            String path = "/api/v1/resource/" + i;
+            if (i % 10 == 0) {
+                Histogram histogram = latency.labels(path);
+                for (int j = 0; j < 20; j++) {
+                    histogram.update(random.nextDouble() * 2);
+                }
+            } else if (i % 2 == 0) {
+                inflight.labels(path).set(random.nextDouble() * 100);
+            } else {
+                requests.labels("GET", path).inc(random.nextInt(1_000_000));
+            }
+        }
+
+        remoteWrite = new RemoteWriteSerializationStrategy();
+        out = new ByteArrayOutputStream();
+
+        registry.write(out);
+        int text = out.size();
+        textGzipBenchmark();
+        int textGzip = out.size();
+        remoteWriteBenchmark();
+        int protobufSnappy = out.size();
+        System.out.printf("%nBody bytes: text %d, text+gzip %d, remote write %d%n", text, textGzip, protobufSnappy);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void textGzipBenchmark() throws IOException {
+        out.reset();
+        try (GzipOutputStream gzip = GzipOutputStream.open(out, Deflater.BEST_SPEED)) {
+            registry.write(gzip);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void remoteWriteBenchmark() {
+        out.reset();
+        registry.write(out, remoteWrite);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RemoteWriteBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -22,7 +22,9 @@ import java.util.concurrent.TimeUnit;
 public class SummaryBenchmark {
 
     private Summary victoriaMetricsSummary;
+    private Summary victoriaMetricsBufferedSummary;
     private Histogram victoriaMetricsHistogram;
+    private Histogram victoriaMetricsStripedHistogram;
     private io.prometheus.client.Summary prometheusSimpleSummary;
     private io.prometheus.client.Histogram prometheusSimpleHistogram;
 
@@ -32,11 +34,22 @@ public class SummaryBenchmark {
 
         victoriaMetricsSummary = metricRegistry.getOrCreateSummary("summary");
 
+        victoriaMetricsBufferedSummary = metricRegistry.createSummary()
+                                                       .withBufferedRecording()
+                                                       .name("buffered_summary")
+                                                       .register();
+
         victoriaMetricsHistogram = metricRegistry.createHistogram()
                                                  .name("histogram")
                                                  .addLabel("foo", "bar")
                                                  .register();
 
+        victoriaMetricsStripedHistogram = metricRegistry.createHistogram()
+                                                        .withMode(Histogram.Mode.STRIPED)
+                                                        .name("striped_histogram")
+                                                        .addLabel("foo", "bar")
+                                                        .register();
+
         prometheusSimpleSummary = io.prometheus.client.Summary.build()
                                                               .name("name")
                                                               .help("some description..")
@@ -58,10 +71,24 @@ public class SummaryBenchmark {
     @Benchmark
     @BenchmarkMode({Mode.AverageTime})
     @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void victoriaMetricsBufferedSummaryBenchmark() {
+        victoriaMetricsBufferedSummary.update(1);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
     public void victoriaMetricsHistogramBenchmark() {
         victoriaMetricsHistogram.update(1);
     }
 
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void victoriaMetricsStripedHistogramBenchmark() {
+        victoriaMetricsStripedHistogram.update(1);
+    }
+
     @Benchmark
     @BenchmarkMode({Mode.AverageTime})
     @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -86,5 +113,20 @@ public class SummaryBenchmark {
                 .build();
 
         new Runner(opt).run();
+
+        // Scalability of histogram updates with the number of recording threads
+        for (int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            Options histogramOpt = new OptionsBuilder()
+                    .include(SummaryBenchmark.class.getSimpleName() + ".victoriaMetrics.*HistogramBenchmark")
+                    .mode(Mode.Throughput)
+                    .timeUnit(TimeUnit.MICROSECONDS)
+                    .warmupIterations(5)
+                    .measurementIterations(4)
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(histogramOpt).run();
+        }
     }
 }
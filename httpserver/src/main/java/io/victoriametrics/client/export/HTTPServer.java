@@ -7,14 +7,23 @@ package io.victoriametrics.client.export;
 import com.sun.net.httpserver.*;
 import io.victoriametrics.client.metrics.Counter;
 import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.serialization.ExpositionCache;
+import io.victoriametrics.client.utils.GzipOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 /**
  * Expose metrics with a plain Java HttpServer.
@@ -26,17 +35,31 @@ public class HTTPServer implements Closeable {
 
     private final HttpServer server;
 
-    private HTTPServer(HttpServer httpServer, MetricRegistry metricRegistry, Authenticator authenticator, String context) {
+    /**
+     * Executor created by the builder, which is shut down with the server.
+     */
+    private final ExecutorService ownExecutor;
+
+    private HTTPServer(HttpServer httpServer, MetricRegistry metricRegistry, Authenticator authenticator, String context,
+                       boolean streaming, int compressionLevel, Duration cacheInterval,
+                       ExecutorService ownExecutor) {
         if (metricRegistry == null) {
             throw new IllegalArgumentException("metricRegistry is null");
         }
 
         server = httpServer;
+        this.ownExecutor = ownExecutor;
 
         if (context == null) {
             context = "/metrics";
         }
-        HttpContext httpContext = server.createContext(context, new MetricHttpHandler(metricRegistry, context));
+        ExpositionCache cache = null;
+        if (cacheInterval != null) {
+            cache = new ExpositionCache(metricRegistry, cacheInterval,
+                    compressionLevel != Deflater.NO_COMPRESSION ? compressionLevel : Deflater.BEST_SPEED);
+        }
+        HttpContext httpContext = server.createContext(context, new MetricHttpHandler(metricRegistry, context, streaming,
+                compressionLevel, cache));
 
         if (authenticator != null) {
             httpContext.setAuthenticator(authenticator);
@@ -51,19 +74,60 @@ public class HTTPServer implements Closeable {
         close();
     }
 
+    /**
+     * Port the server listens on, e.g. the one assigned by the system for port {@code 0}.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
     @Override
     public void close() {
         server.stop(0);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
     }
 
     public static class MetricHttpHandler implements HttpHandler {
 
+        private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
         private final MetricRegistry metricRegistry;
 
         private final Counter requestsCount;
 
+        private final boolean streaming;
+
+        private final int compressionLevel;
+
+        private final ExpositionCache cache;
+
         public MetricHttpHandler(MetricRegistry metricRegistry, String context) {
+            this(metricRegistry, context, false, Deflater.NO_COMPRESSION);
+        }
+
+        /**
+         * @param streaming        Whether to serialize metrics straight into a chunked response
+         *                         instead of rendering them into memory to send {@code Content-Length}
+         * @param compressionLevel Level of gzip compression of responses to clients which accept it,
+         *                         {@link Deflater#NO_COMPRESSION} disables compression
+         */
+        public MetricHttpHandler(MetricRegistry metricRegistry, String context, boolean streaming,
+                                 int compressionLevel) {
+            this(metricRegistry, context, streaming, compressionLevel, null);
+        }
+
+        /**
+         * @param cache Cache of rendered metrics to serve responses from, or {@code null} to render
+         *              metrics on every request. Cached responses are always sent with {@code Content-Length}.
+         */
+        public MetricHttpHandler(MetricRegistry metricRegistry, String context, boolean streaming,
+                                 int compressionLevel, ExpositionCache cache) {
             this.metricRegistry = metricRegistry;
+            this.streaming = streaming;
+            this.compressionLevel = compressionLevel;
+            this.cache = cache;
 
             this.requestsCount = metricRegistry.createCounter()
                     .name("http_server_requests_total")
@@ -74,23 +138,85 @@ public class HTTPServer implements Closeable {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             requestsCount.inc();
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", CONTENT_TYPE);
+
+            boolean gzip = false;
+            if (compressionLevel != Deflater.NO_COMPRESSION) {
+                headers.set("Vary", "Accept-Encoding");
+                gzip = GzipOutputStream.acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            }
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+
+            if (cache != null) {
+                writeCached(exchange, gzip);
+            } else if (streaming) {
+                writeStreaming(exchange, gzip);
+            } else {
+                writeBuffered(exchange, gzip);
+            }
+        }
+
+        private void writeBuffered(HttpExchange exchange, boolean gzip) throws IOException {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
-            try {
-                OutputStreamWriter osw = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-                metricRegistry.write(osw);
-                osw.flush();
+            try (OutputStream out = gzip ? GzipOutputStream.open(baos, compressionLevel) : baos) {
+                metricRegistry.write(out);
             } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                byte[] bytes = e.getMessage().getBytes();
-                exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, bytes.length);
-                exchange.getResponseBody().write(bytes);
+                sendError(exchange, e);
+                return;
             }
 
             exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, baos.size());
             baos.writeTo(exchange.getResponseBody());
             exchange.close();
         }
+
+        private void writeCached(HttpExchange exchange, boolean gzip) throws IOException {
+            byte[] bytes;
+            try {
+                bytes = gzip ? cache.getGzip() : cache.get();
+            } catch (Exception e) {
+                sendError(exchange, e);
+                return;
+            }
+
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+
+        private void sendError(HttpExchange exchange, Exception e) throws IOException {
+            logger.error(e.getMessage(), e);
+            exchange.getResponseHeaders().remove("Content-Encoding");
+            byte[] bytes = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+
+        /**
+         * Send headers right away and serialize metrics into the response through the pooled buffer
+         * of the serialization strategy, so the full response is never held in memory.
+         */
+        private void writeStreaming(HttpExchange exchange, boolean gzip) throws IOException {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+
+            OutputStream body = exchange.getResponseBody();
+            try {
+                OutputStream out = gzip ? GzipOutputStream.open(body, compressionLevel) : body;
+                metricRegistry.write(out);
+                out.close();
+            } catch (Exception e) {
+                // The status is already sent. Dropping the connection without the last chunk
+                // lets the client detect a truncated response.
+                logger.error(e.getMessage(), e);
+                throw new IOException("Unable to write metrics", e);
+            }
+            exchange.close();
+        }
     }
 
     public static class Builder {
@@ -100,6 +226,13 @@ public class HTTPServer implements Closeable {
         private InetAddress inetAddress;
         private MetricRegistry collection;
         private String context;
+        private boolean streaming;
+        private int compressionLevel = Deflater.NO_COMPRESSION;
+        private int backlog;
+        private Executor executor;
+        private int threads;
+        private boolean virtualThreads;
+        private Duration cacheInterval;
 
         public Builder withPort(int port) {
             this.port = port;
@@ -131,11 +264,84 @@ public class HTTPServer implements Closeable {
             return this;
         }
 
+        /**
+         * Stream responses with chunked transfer encoding instead of buffering them to send {@code Content-Length}.
+         * Streaming reduces memory usage and time to the first byte for large registries.
+         */
+        public Builder withStreaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        /**
+         * Compress responses to clients which send {@code Accept-Encoding: gzip} with the given gzip level,
+         * e.g. {@link Deflater#BEST_SPEED}. Responses are not compressed by default,
+         * {@link Deflater#NO_COMPRESSION} disables compression.
+         */
+        public Builder withCompressionLevel(int compressionLevel) {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Serve rendered metrics from a cache for up to {@code minInterval}, so concurrent scrapes
+         * of several clients share a single render of the registry. Cached responses are not streamed.
+         *
+         * @see ExpositionCache
+         */
+        public Builder withCache(Duration minInterval) {
+            this.cacheInterval = minInterval;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of incoming connections to queue. Defaults to the system default.
+         */
+        public Builder withBacklog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Handle requests with the given executor, which is not shut down with the server.
+         * By default, requests are handled one by one on the dispatcher thread of the server.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Handle requests on a pool of a fixed number of daemon threads, which is shut down with the server.
+         */
+        public Builder withThreadPool(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Number of threads must be positive");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Handle each request on a new virtual thread. Requires Java 21 or newer.
+         */
+        public Builder withVirtualThreads() {
+            this.virtualThreads = true;
+            return this;
+        }
+
         public HTTPServer build() throws IOException {
             if (inetAddress != null && hostname != null) {
                 throw new IllegalStateException("'inetAddress' and 'hostname' connot be used at the same time");
             }
 
+            if ((executor != null ? 1 : 0) + (threads > 0 ? 1 : 0) + (virtualThreads ? 1 : 0) > 1) {
+                throw new IllegalStateException("Only one of 'executor', 'threadPool' and 'virtualThreads' can be used");
+            }
+
             if (inetAddress == null && hostname == null) {
                 hostname = "localhost";
             }
@@ -144,10 +350,54 @@ public class HTTPServer implements Closeable {
                 inetAddress = InetAddress.getByName(hostname);
             }
 
+            // the executor is created first, so a failure doesn't leave the port bound
+            ExecutorService ownExecutor = null;
+            if (threads > 0) {
+                ownExecutor = newThreadPool(threads);
+            } else if (virtualThreads) {
+                ownExecutor = newVirtualThreadPerTaskExecutor();
+            }
+
             var inetSocketAddress = new InetSocketAddress(inetAddress, port);
-            HttpServer httpsServer = HttpServer.create(inetSocketAddress, 0);
+            HttpServer httpsServer = null;
+            try {
+                httpsServer = HttpServer.create(inetSocketAddress, backlog);
+                httpsServer.setExecutor(ownExecutor != null ? ownExecutor : executor);
+
+                return new HTTPServer(httpsServer, collection, authenticator, context, streaming,
+                        compressionLevel, cacheInterval, ownExecutor);
+            } catch (IOException | RuntimeException e) {
+                if (httpsServer != null) {
+                    httpsServer.stop(0);
+                }
+                if (ownExecutor != null) {
+                    ownExecutor.shutdownNow();
+                }
+                throw e;
+            }
+        }
 
-            return new HTTPServer(httpsServer, collection, authenticator, context);
+        private static ExecutorService newThreadPool(int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "vm-metrics-http-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Create a virtual thread executor by reflection, as the module is compiled for Java 17.
+         */
+        private static ExecutorService newVirtualThreadPerTaskExecutor() {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create a virtual thread executor", e);
+            }
         }
     }
 
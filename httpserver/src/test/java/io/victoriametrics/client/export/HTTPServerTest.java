@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.export;
+
+import io.victoriametrics.client.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HTTPServerTest {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final MetricRegistry registry = MetricRegistry.create();
+
+    private HTTPServer server;
+
+    @AfterEach
+    public void close() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void bufferedResponse() throws Exception {
+        registry.getOrCreateCounter("foo").inc();
+        start(newBuilder());
+
+        HttpResponse<byte[]> response = get(null);
+        assertEquals(200, response.statusCode());
+        assertEquals(CONTENT_TYPE, header(response, "Content-Type"));
+        assertEquals(String.valueOf(response.body().length), header(response, "Content-Length"));
+        assertFalse(response.headers().firstValue("Transfer-Encoding").isPresent());
+        assertEquals(render(), text(response.body()));
+        assertTrue(text(response.body()).contains("foo 1\n"));
+    }
+
+    @Test
+    public void streamingResponse() throws Exception {
+        for (int i = 0; i < 10_000; i++) {
+            registry.getOrCreateCounter("requests_total{path=\"/" + i + "\"}").inc(i);
+        }
+        start(newBuilder().withStreaming(true));
+
+        HttpResponse<byte[]> response = get(null);
+        assertEquals(200, response.statusCode());
+        assertEquals(CONTENT_TYPE, header(response, "Content-Type"));
+        assertEquals("chunked", header(response, "Transfer-Encoding"));
+        assertFalse(response.headers().firstValue("Content-Length").isPresent());
+        assertEquals(render(), text(response.body()));
+    }
+
+    @Test
+    public void bufferedResponseError() throws Exception {
+        registerBrokenGauge();
+        start(newBuilder());
+
+        HttpResponse<byte[]> response = get(null);
+        assertEquals(500, response.statusCode());
+        assertEquals("broken gauge", text(response.body()));
+    }
+
+    @Test
+    public void streamingResponseError() throws Exception {
+        registerBrokenGauge();
+        start(newBuilder().withStreaming(true));
+
+        // the status is sent before the failure, so the response is truncated
+        assertThrows(IOException.class, () -> get(null));
+    }
+
+    @Test
+    public void uncompressedByDefault() throws Exception {
+        registry.getOrCreateCounter("foo").inc();
+        start(newBuilder());
+
+        HttpResponse<byte[]> response = get("gzip");
+        assertEquals(200, response.statusCode());
+        assertNull(header(response, "Content-Encoding"));
+        assertNull(header(response, "Vary"));
+        assertEquals(render(), text(response.body()));
+    }
+
+    @Test
+    public void negotiateGzip() throws Exception {
+        registry.getOrCreateCounter("foo").inc();
+        start(newBuilder().withCompressionLevel(Deflater.BEST_SPEED));
+
+        HttpResponse<byte[]> response = get("deflate, gzip;q=0.5");
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertEquals(String.valueOf(response.body().length), header(response, "Content-Length"));
+        assertEquals(render(), text(gunzip(response.body())));
+
+        for (String acceptEncoding : new String[]{null, "identity", "gzip;q=0", "br"}) {
+            response = get(acceptEncoding);
+            assertEquals(200, response.statusCode());
+            assertNull(header(response, "Content-Encoding"), acceptEncoding);
+            assertEquals("Accept-Encoding", header(response, "Vary"));
+            assertEquals(render(), text(response.body()));
+        }
+    }
+
+    @Test
+    public void negotiateGzipWhenStreaming() throws Exception {
+        for (int i = 0; i < 10_000; i++) {
+            registry.getOrCreateCounter("requests_total{path=\"/" + i + "\"}").inc(i);
+        }
+        start(newBuilder().withStreaming(true).withCompressionLevel(Deflater.BEST_COMPRESSION));
+
+        HttpResponse<byte[]> response = get("gzip");
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("chunked", header(response, "Transfer-Encoding"));
+        assertEquals(render(), text(gunzip(response.body())));
+    }
+
+    @Test
+    public void sendErrorUncompressed() throws Exception {
+        registerBrokenGauge();
+        start(newBuilder().withCompressionLevel(Deflater.BEST_SPEED));
+
+        HttpResponse<byte[]> response = get("gzip");
+        assertEquals(500, response.statusCode());
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals("broken gauge", text(response.body()));
+    }
+
+    @Test
+    public void rejectInvalidCompressionLevel() {
+        assertThrows(IllegalArgumentException.class, () -> newBuilder().withCompressionLevel(10));
+    }
+
+    @Test
+    public void handleOnExecutor() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            start(newBuilder().withExecutor(runnable -> {
+                tasks.incrementAndGet();
+                pool.execute(runnable);
+            }));
+
+            assertEquals(200, get(null).statusCode());
+            assertTrue(tasks.get() > 0);
+
+            // a caller-owned executor is not shut down with the server
+            server.close();
+            server = null;
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void handleOnThreadPool() throws Exception {
+        // both requests are in the handler at the same time only if they run on different threads
+        CountDownLatch inHandler = new CountDownLatch(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        registry.getOrCreateGauge("concurrent", (DoubleSupplier) () -> {
+            threads.add(Thread.currentThread().getName());
+            inHandler.countDown();
+            try {
+                return inHandler.await(10, TimeUnit.SECONDS) ? 1 : 0;
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        start(newBuilder().withThreadPool(2));
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<HttpResponse<byte[]>> first = clients.submit(() -> get(null));
+            Future<HttpResponse<byte[]>> second = clients.submit(() -> get(null));
+            assertTrue(text(first.get(20, TimeUnit.SECONDS).body()).contains("concurrent 1.0\n"));
+            assertTrue(text(second.get(20, TimeUnit.SECONDS).body()).contains("concurrent 1.0\n"));
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(2, threads.size());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("vm-metrics-http-")), threads.toString());
+    }
+
+    @Test
+    public void handleOnVirtualThreads() throws Exception {
+        if (Runtime.version().feature() < 21) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            assertThrows(IllegalStateException.class, () -> newBuilder().withPort(port).withVirtualThreads().build());
+
+            // the failed build doesn't leave the port bound
+            new ServerSocket(port).close();
+            return;
+        }
+
+        // Thread.isVirtual() is called by reflection, as the module is compiled for Java 17
+        Method isVirtual = Thread.class.getMethod("isVirtual");
+        AtomicBoolean virtual = new AtomicBoolean();
+        registry.getOrCreateGauge("virtual", (DoubleSupplier) () -> {
+            try {
+                virtual.set((Boolean) isVirtual.invoke(Thread.currentThread()));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            return 1;
+        });
+        start(newBuilder().withVirtualThreads());
+
+        assertEquals(200, get(null).statusCode());
+        assertTrue(virtual.get());
+    }
+
+    @Test
+    public void handleWithBacklog() throws Exception {
+        registry.getOrCreateCounter("foo").inc();
+        start(newBuilder().withBacklog(1).withThreadPool(1));
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<byte[]> response = get(null);
+            assertEquals(200, response.statusCode());
+            assertTrue(text(response.body()).contains("foo 1\n"));
+        }
+    }
+
+    @Test
+    public void rejectConflictingExecutors() {
+        assertThrows(IllegalStateException.class,
+                () -> newBuilder().withThreadPool(2).withExecutor(Runnable::run).build());
+        assertThrows(IllegalStateException.class,
+                () -> newBuilder().withThreadPool(2).withVirtualThreads().build());
+        assertThrows(IllegalArgumentException.class, () -> newBuilder().withThreadPool(0));
+    }
+
+    @Test
+    public void serveFromCache() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        registry.getOrCreateGauge("renders", (DoubleSupplier) renders::incrementAndGet);
+        start(newBuilder().withCache(Duration.ofHours(1)).withStreaming(true)
+                          .withCompressionLevel(Deflater.BEST_SPEED));
+
+        HttpResponse<byte[]> first = get(null);
+        assertEquals(200, first.statusCode());
+        assertTrue(text(first.body()).contains("renders 1.0\n"));
+        // cached responses are never streamed
+        assertEquals(String.valueOf(first.body().length), header(first, "Content-Length"));
+
+        HttpResponse<byte[]> second = get(null);
+        assertArrayEquals(first.body(), second.body());
+
+        HttpResponse<byte[]> compressed = get("gzip");
+        assertEquals("gzip", header(compressed, "Content-Encoding"));
+        assertEquals(String.valueOf(compressed.body().length), header(compressed, "Content-Length"));
+        assertArrayEquals(first.body(), gunzip(compressed.body()));
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void shareCachedRenderBetweenConcurrentScrapes() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        registry.getOrCreateGauge("slow", (DoubleSupplier) () -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return renders.incrementAndGet();
+        });
+        start(newBuilder().withCache(Duration.ofHours(1)).withThreadPool(2));
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<HttpResponse<byte[]>> first = clients.submit(() -> get(null));
+            Future<HttpResponse<byte[]>> second = clients.submit(() -> get(null));
+            assertArrayEquals(first.get(20, TimeUnit.SECONDS).body(), second.get(20, TimeUnit.SECONDS).body());
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void renderAgainAfterCacheInterval() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        registry.getOrCreateGauge("renders", (DoubleSupplier) renders::incrementAndGet);
+        start(newBuilder().withCache(Duration.ZERO));
+
+        assertTrue(text(get(null).body()).contains("renders 1.0\n"));
+        assertTrue(text(get(null).body()).contains("renders 2.0\n"));
+    }
+
+    @Test
+    public void sendCacheError() throws Exception {
+        registerBrokenGauge();
+        start(newBuilder().withCache(Duration.ofHours(1)).withCompressionLevel(Deflater.BEST_SPEED));
+
+        HttpResponse<byte[]> response = get("gzip");
+        assertEquals(500, response.statusCode());
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals("broken gauge", text(response.body()));
+    }
+
+    void registerBrokenGauge() {
+        registry.getOrCreateGauge("broken", (DoubleSupplier) () -> {
+            throw new IllegalStateException("broken gauge");
+        });
+    }
+
+    HTTPServer.Builder newBuilder() {
+        return new HTTPServer.Builder()
+                .withMetricCollection(registry)
+                .withHostname("localhost")
+                .withPort(0);
+    }
+
+    void start(HTTPServer.Builder builder) throws IOException {
+        server = builder.build();
+        server.start();
+    }
+
+    HttpResponse<byte[]> get(String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getPort() + "/metrics"));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    String render() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.write(out);
+        return text(out.toByteArray());
+    }
+
+    static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
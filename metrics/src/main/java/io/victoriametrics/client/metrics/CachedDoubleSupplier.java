@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Supplier which returns a cached value and refreshes it asynchronously when it gets older than max age.
+ *
+ * <p>Readers never call the source. At most one refresh runs at a time,
+ * and a failed refresh is logged and keeps the previous value. The next attempt is made once max age passes
+ * after the failure, so a broken source isn't called on every read.</p>
+ */
+final class CachedDoubleSupplier implements DoubleSupplier {
+
+    private static final System.Logger logger = System.getLogger(CachedDoubleSupplier.class.getName());
+
+    static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vm-metrics-gauge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DoubleSupplier source;
+    private final long maxAgeNs;
+    private final Executor executor;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile double value = Double.NaN;
+    /**
+     * Time of the last completed refresh, successful or not.
+     */
+    private volatile long attemptNs;
+
+    CachedDoubleSupplier(DoubleSupplier source, Duration maxAge, Executor executor) {
+        this.source = Objects.requireNonNull(source);
+        this.maxAgeNs = maxAge.toNanos();
+        this.executor = Objects.requireNonNull(executor);
+        if (maxAgeNs < 0) {
+            throw new IllegalArgumentException("Max age must be non-negative");
+        }
+
+        // the value is stale until the first refresh completes
+        attemptNs = System.nanoTime() - maxAgeNs - 1;
+        refresh();
+    }
+
+    @Override
+    public double getAsDouble() {
+        if (System.nanoTime() - attemptNs > maxAgeNs) {
+            refresh();
+        }
+        return value;
+    }
+
+    private void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::load);
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    private void load() {
+        try {
+            value = source.getAsDouble();
+        } catch (RuntimeException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to refresh a cached gauge value", e);
+        } finally {
+            attemptNs = System.nanoTime();
+            refreshing.set(false);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package io.victoriametrics.client.metrics;
 
-import java.util.concurrent.atomic.LongAdder;
+import java.util.Objects;
 
 /**
  * Counter metric.
@@ -9,15 +9,34 @@ import java.util.concurrent.atomic.LongAdder;
  */
 public class Counter implements Metric {
 
-    private final LongAdder value = new LongAdder();
-    private final String name;
+    private final CounterStorage storage;
+    private final MetricName name;
+
+    /**
+     * Epoch of the last modification, see {@link ModificationEpoch}.
+     */
+    private final ModificationEpoch modificationEpoch = new ModificationEpoch();
 
     public Counter(String name) {
-        this.name = name;
+        this(MetricName.parse(name));
+    }
+
+    public Counter(MetricName name) {
+        this(name, new CounterStorage.Heap());
+    }
+
+    Counter(MetricName name, CounterStorage storage) {
+        this.name = Objects.requireNonNull(name);
+        this.storage = storage;
     }
 
     @Override
     public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
         return name;
     }
 
@@ -26,11 +45,17 @@ public class Counter implements Metric {
         visitor.visit(this);
     }
 
+    @Override
+    public long getModificationEpoch() {
+        return modificationEpoch.get();
+    }
+
     /**
      * Increment counter.
      */
     public void inc() {
-        this.value.increment();
+        storage.add(1);
+        modificationEpoch.mark();
     }
 
     /**
@@ -38,14 +63,16 @@ public class Counter implements Metric {
      * @param value The value by which counter will be increased
      */
     public void inc(long value) {
-        this.value.add(value);
+        storage.add(value);
+        modificationEpoch.mark();
     }
 
     /**
      * Increment counter by {@code value}
      */
     public void dec() {
-        this.value.decrement();
+        storage.add(-1);
+        modificationEpoch.mark();
     }
 
     /**
@@ -54,11 +81,12 @@ public class Counter implements Metric {
      */
 
     public void dec(long value) {
-        this.value.add(-value);
+        storage.add(-value);
+        modificationEpoch.mark();
     }
 
     public long get() {
-        return value.sum();
+        return storage.sum();
     }
 
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Storage of a {@link Counter} value.
+ */
+interface CounterStorage {
+
+    /**
+     * Add {@code delta}, which may be negative.
+     */
+    void add(long delta);
+
+    /**
+     * Current value.
+     */
+    long sum();
+
+    /**
+     * Storage on the heap in a {@link LongAdder}, striped across threads to avoid contention.
+     */
+    final class Heap implements CounterStorage {
+
+        private final LongAdder adder = new LongAdder();
+
+        @Override
+        public void add(long delta) {
+            adder.add(delta);
+        }
+
+        @Override
+        public long sum() {
+            return adder.sum();
+        }
+    }
+}
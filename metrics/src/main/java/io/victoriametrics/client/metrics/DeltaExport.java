@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import io.victoriametrics.client.serialization.StreamSerializationStrategy;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Export of the metrics of a registry which changed since the previous export.
+ *
+ * <p>Counters, gauges set by the application, histograms and summaries are exported when they were updated
+ * after the previous export began. Gauges computed on demand are always exported. Every metric is exported
+ * at least once per full refresh interval, so receivers which missed a delta catch up with the current values.
+ * The first export is full.</p>
+ *
+ * <p>An export which fails doesn't advance the tracked state, so the next export includes its metrics.
+ * An update which races with an export is written either by the export or by the next one.</p>
+ *
+ * @see MetricRegistry#createDeltaExport(Duration)
+ */
+public final class DeltaExport {
+
+    private final MetricRegistry registry;
+    private final long fullRefreshIntervalNs;
+
+    /**
+     * Metrics of the current export, reused between exports.
+     */
+    private final List<Metric> changed = new ArrayList<>();
+
+    private long since;
+    private long lastFullRefreshNs;
+    private boolean fullRefreshRequested = true;
+
+    DeltaExport(MetricRegistry registry, Duration fullRefreshInterval) {
+        if (fullRefreshInterval.isNegative()) {
+            throw new IllegalArgumentException("Full refresh interval must be non-negative");
+        }
+        this.registry = registry;
+        this.fullRefreshIntervalNs = fullRefreshInterval.toNanos();
+    }
+
+    /**
+     * Serialize changed metrics with the serialization strategy of the registry.
+     *
+     * @param out destination, which is not closed
+     * @return number of exported metrics
+     */
+    public int write(OutputStream out) {
+        return write(out, registry.getSerializationStrategy());
+    }
+
+    /**
+     * Serialize changed metrics with {@code strategy}.
+     *
+     * @param out      destination, which is not closed
+     * @param strategy strategy to serialize metrics with
+     * @return number of exported metrics
+     */
+    public synchronized int write(OutputStream out, StreamSerializationStrategy strategy) {
+        long now = System.nanoTime();
+        boolean full = fullRefreshRequested || now - lastFullRefreshNs >= fullRefreshIntervalNs;
+        long epoch = ModificationEpoch.advance();
+
+        Collection<Metric> metrics = registry.getMetrics();
+        int count;
+        if (full) {
+            strategy.serialize(metrics, out);
+            count = metrics.size();
+        } else {
+            try {
+                for (Metric metric : metrics) {
+                    if (metric.getModificationEpoch() >= since) {
+                        changed.add(metric);
+                    }
+                }
+                strategy.serialize(changed, out);
+                count = changed.size();
+            } finally {
+                changed.clear();
+            }
+        }
+
+        since = epoch;
+        if (full) {
+            lastFullRefreshNs = now;
+            fullRefreshRequested = false;
+        }
+        return count;
+    }
+
+    /**
+     * Export all metrics on the next export, e.g. after the output of a previous export was lost.
+     */
+    public synchronized void requestFullRefresh() {
+        fullRefreshRequested = true;
+    }
+}
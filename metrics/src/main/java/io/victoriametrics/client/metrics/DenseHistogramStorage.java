@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dense bucket array guarded by a single lock.
+ */
+final class DenseHistogramStorage extends HistogramStorage {
+
+    private final long[] slots;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    private final ReentrantLock mutex = new ReentrantLock();
+
+    DenseHistogramStorage(int slotsCount) {
+        this.slots = new long[slotsCount];
+    }
+
+    @Override
+    void add(int slot, double value) {
+        try {
+            mutex.lock();
+
+            sum.add(value);
+            slots[slot]++;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    void add(int slot, long count, double sum) {
+        try {
+            mutex.lock();
+
+            this.sum.add(sum);
+            slots[slot] += count;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    void add(double[] values, int off, int len) {
+        try {
+            mutex.lock();
+
+            double total = 0;
+            for (int i = off; i < off + len; i++) {
+                final double value = values[i];
+                if (value < 0) {
+                    continue;
+                }
+                slots[HistogramBuckets.slotOf(value)]++;
+                total += value;
+            }
+            sum.add(total);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    double collect(long[] counts, boolean reset) {
+        try {
+            mutex.lock();
+
+            for (int slot = 0; slot < slots.length; slot++) {
+                counts[slot] += slots[slot];
+            }
+
+            if (reset) {
+                Arrays.fill(slots, 0);
+                return sum.sumThenReset();
+            }
+            return sum.sum();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    double sum() {
+        return sum.sum();
+    }
+
+    @Override
+    void reset() {
+        try {
+            mutex.lock();
+
+            Arrays.fill(slots, 0);
+            sum.reset();
+        } finally {
+            mutex.unlock();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Counter metric with fractional values.
+ *
+ * E.g. the metric allows to track number of processed gigabytes or total cost.
+ */
+public class FloatCounter implements Metric {
+
+    private final DoubleAdder value = new DoubleAdder();
+    private final MetricName name;
+
+    /**
+     * Epoch of the last modification, see {@link ModificationEpoch}.
+     */
+    private final ModificationEpoch modificationEpoch = new ModificationEpoch();
+
+    public FloatCounter(String name) {
+        this(MetricName.parse(name));
+    }
+
+    public FloatCounter(MetricName name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    @Override
+    public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
+        return name;
+    }
+
+    @Override
+    public void accept(MetricVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public long getModificationEpoch() {
+        return modificationEpoch.get();
+    }
+
+    /**
+     * Increment counter by {@code value}
+     * @param value The value by which counter will be increased
+     */
+    public void inc(double value) {
+        this.value.add(value);
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Decrement counter by {@code value}
+     * @param value The value by which counter will be decreased
+     */
+    public void dec(double value) {
+        this.value.add(-value);
+        modificationEpoch.mark();
+    }
+
+    public double get() {
+        return value.sum();
+    }
+}
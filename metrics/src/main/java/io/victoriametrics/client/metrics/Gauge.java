@@ -1,27 +1,83 @@
 package io.victoriametrics.client.metrics;
 
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
  * Gauge is double gauge metric.
+ *
+ * <p>The value is obtained from a supplier on every read. A gauge with a max age reads a cached value instead,
+ * which is refreshed in background when it gets older than the max age,
+ * so a slow supplier doesn't delay serialization of the registry.</p>
  */
 public class Gauge implements Metric {
 
-    private final String name;
-    private final Supplier<Double> supplier;
+    private final MetricName name;
+    private final DoubleSupplier supplier;
 
     public Gauge(String name, Supplier<Double> supplier) {
-        this.name = name;
+        this(name, unbox(supplier));
+    }
+
+    public Gauge(String name, DoubleSupplier supplier) {
+        this(MetricName.parse(name), supplier);
+    }
+
+    public Gauge(MetricName name, DoubleSupplier supplier) {
+        this.name = Objects.requireNonNull(name);
         this.supplier = Objects.requireNonNull(supplier);
     }
 
+    public Gauge(String name, LongSupplier supplier) {
+        this(name, widen(supplier));
+    }
+
+    /**
+     * Create a gauge which reads a cached value and refreshes it asynchronously on the shared daemon executor.
+     *
+     * @param maxAge Age of the value after which it is refreshed
+     */
+    public Gauge(String name, DoubleSupplier supplier, Duration maxAge) {
+        this(MetricName.parse(name), supplier, maxAge, CachedDoubleSupplier.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Create a gauge which reads a cached value and refreshes it asynchronously.
+     * The value is {@link Double#NaN} until the first refresh completes.
+     *
+     * @param maxAge   Age of the value after which it is refreshed
+     * @param executor Executor which calls the supplier
+     */
+    public Gauge(String name, DoubleSupplier supplier, Duration maxAge, Executor executor) {
+        this(MetricName.parse(name), supplier, maxAge, executor);
+    }
+
+    /**
+     * Create a gauge which reads a cached value and refreshes it asynchronously.
+     * The value is {@link Double#NaN} until the first refresh completes.
+     *
+     * @param maxAge   Age of the value after which it is refreshed
+     * @param executor Executor which calls the supplier
+     */
+    public Gauge(MetricName name, DoubleSupplier supplier, Duration maxAge, Executor executor) {
+        this(name, new CachedDoubleSupplier(supplier, maxAge, executor));
+    }
+
     public double get() {
-        return supplier.get();
+        return supplier.getAsDouble();
     }
 
     @Override
     public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
         return name;
     }
 
@@ -29,4 +85,14 @@ public class Gauge implements Metric {
     public void accept(MetricVisitor visitor) {
         visitor.visit(this);
     }
+
+    static DoubleSupplier unbox(Supplier<Double> supplier) {
+        Objects.requireNonNull(supplier);
+        return supplier::get;
+    }
+
+    static DoubleSupplier widen(LongSupplier supplier) {
+        Objects.requireNonNull(supplier);
+        return supplier::getAsLong;
+    }
 }
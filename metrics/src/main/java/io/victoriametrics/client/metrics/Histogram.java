@@ -1,26 +1,16 @@
 package io.victoriametrics.client.metrics;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.DoubleAdder;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Objects;
+
+import static io.victoriametrics.client.metrics.HistogramBuckets.*;
 
 /**
  * Histogram for non-negative values with automatically created buckets.
  */
 public class Histogram implements Metric {
 
-    private final static int E_10_MIN = -9;
-
-    private final static int E_10_MAX = 18;
-
-    private final static int DECIMAL_BUCKETS_COUNT = E_10_MAX - E_10_MIN;
-
-    private final static int BUCKETS_PER_DECIMAL = 18;
-
-    private final static int BUCKETS_COUNT = DECIMAL_BUCKETS_COUNT * BUCKETS_PER_DECIMAL;
-
     private final static double MULTIPLIER = Math.pow(10, 1.0 / 18);
 
     private final static String RANGE_PATTERN = "%.3e";
@@ -31,38 +21,46 @@ public class Histogram implements Metric {
 
     private final static String upperRangeBucket = String.format(RANGE_PATTERN + "...+Inf", Math.pow(10, E_10_MAX));
 
-    private final long[] buckets = new long[BUCKETS_COUNT];
-    private long lower;
-    private long upper;
-    private final DoubleAdder sum = new DoubleAdder();
+    private final HistogramStorage storage;
 
-    private final String name;
+    private final MetricName name;
 
-    private final ReentrantLock mutex = new ReentrantLock();
+    /**
+     * Epoch of the last modification, see {@link ModificationEpoch}.
+     */
+    private final ModificationEpoch modificationEpoch = new ModificationEpoch();
 
     static {
         createBucketRanges();
     }
 
     public Histogram(String name) {
-        this.name = name;
+        this(name, Mode.DENSE);
+    }
+
+    public Histogram(String name, Mode mode) {
+        this(MetricName.parse(name), mode);
+    }
+
+    public Histogram(MetricName name) {
+        this(name, Mode.DENSE);
+    }
+
+    public Histogram(MetricName name, Mode mode) {
+        this(name, createStorage(mode));
+    }
+
+    Histogram(MetricName name, HistogramStorage storage) {
+        this.name = Objects.requireNonNull(name);
+        this.storage = storage;
     }
 
     /**
      * Reset given histogram
      */
     public void reset() {
-        try {
-            mutex.lock();
-
-            Arrays.fill(buckets, 0);
-
-            lower = 0;
-            upper = 0;
-            sum.reset();
-        } finally {
-            mutex.unlock();
-        }
+        storage.reset();
+        modificationEpoch.mark();
     }
 
     /**
@@ -76,56 +74,97 @@ public class Histogram implements Metric {
             return;
         }
 
-        double bucketIndex = (Math.log10(value) - E_10_MIN) * BUCKETS_PER_DECIMAL;
-        try {
-            mutex.lock();
-
-            sum.add(value);
-
-            if (bucketIndex < 0) {
-                lower++;
-            } else if (bucketIndex > BUCKETS_COUNT) {
-                upper++;
-            } else {
-                int index = (int) bucketIndex;
-                if (bucketIndex == (double)(index) && index > 0) {
-                    // Edge case for 10^n values, which must go to the lower bucket
-                    // according to Prometheus logic for `le`-based histograms.
-                    // -- from github.com/VictoriaMetrics/metrics v1.18.1
-                    index--;
-                }
-                buckets[index]++;
-            }
-        } finally {
-            mutex.unlock();
+        storage.add(slotOf(value), value);
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Update a histogram with the same value observed {@code count} times.
+     *
+     * @param value input value.
+     * @param count number of observations.
+     */
+    public void update(double value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must be non-negative");
         }
+
+        // Ignore negative values
+        if (value < 0 || count == 0) {
+            return;
+        }
+
+        storage.add(slotOf(value), count, value * count);
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Update a histogram with a batch of values at once.
+     * Negative values are ignored.
+     *
+     * @param values input values.
+     * @param off    offset of the first value in {@code values}.
+     * @param len    number of values to record.
+     */
+    public void update(double[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        if (len == 0) {
+            return;
+        }
+
+        storage.add(values, off, len);
+        modificationEpoch.mark();
     }
 
     /**
      * Visit all non-zero buckets.
+     * The visitor is called on a snapshot, so it never blocks updates of the histogram.
      * @param visitor Visitor callback
      */
     public void visit(Visitor visitor) {
-        try {
-            mutex.lock();
-            if (lower > 0) {
-                visitor.value(lowerRangeBucket, lower);
-            }
+        snapshot().visit(visitor);
+    }
 
-            for (int index = 0; index < BUCKETS_COUNT; index++) {
-                final long value = buckets[index];
-                if (value > 0) {
-                    final String range = getRange(index);
-                    visitor.value(range, value);
-                }
-            }
+    /**
+     * Take an immutable copy of the histogram state.
+     *
+     * @return {@link Snapshot}
+     */
+    public Snapshot snapshot() {
+        return takeSnapshot(false);
+    }
 
-            if (upper > 0) {
-                visitor.value(upperRangeBucket, upper);
-            }
-        } finally {
-            mutex.unlock();
-        }
+    /**
+     * Take an immutable copy of the histogram state and reset the histogram.
+     * Every observation is reported either in the returned snapshot or in the next one,
+     * which makes the method suitable for delta-style exports.
+     * The operation is atomic for {@link Mode#DENSE} and {@link Mode#SPARSE} histograms.
+     *
+     * @return {@link Snapshot}
+     */
+    public Snapshot snapshotAndReset() {
+        Snapshot snapshot = takeSnapshot(true);
+        modificationEpoch.mark();
+        return snapshot;
+    }
+
+    /**
+     * Add counters of buckets to {@code counts}, indexed by slot, without taking a snapshot.
+     * Suited for serializers which reuse a single array between histograms.
+     *
+     * @param counts array of at least {@link #getSlotsCount()} counters
+     * @return sum of observed values
+     * @see #getSlotRange(int)
+     */
+    public double collect(long[] counts) {
+        return storage.collect(counts, false);
+    }
+
+    /**
+     * Number of slots of {@link #collect(long[])}, including the ranges below and above the buckets.
+     */
+    public static int getSlotsCount() {
+        return SLOTS_COUNT;
     }
 
     public String getRange(int index) {
@@ -134,6 +173,11 @@ public class Histogram implements Metric {
 
     @Override
     public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
         return name;
     }
 
@@ -142,8 +186,61 @@ public class Histogram implements Metric {
         visitor.visit(this);
     }
 
+    @Override
+    public long getModificationEpoch() {
+        return modificationEpoch.get();
+    }
+
     public double getSum() {
-        return sum.sum();
+        return storage.sum();
+    }
+
+    private Snapshot takeSnapshot(boolean reset) {
+        long[] counts = new long[SLOTS_COUNT];
+        double sum = storage.collect(counts, reset);
+
+        int size = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                size++;
+            }
+        }
+
+        int[] slots = new int[size];
+        long[] values = new long[size];
+        long total = 0;
+        int i = 0;
+        for (int slot = 0; slot < SLOTS_COUNT; slot++) {
+            if (counts[slot] > 0) {
+                slots[i] = slot;
+                values[i] = counts[slot];
+                total += counts[slot];
+                i++;
+            }
+        }
+
+        return new Snapshot(slots, values, total, sum);
+    }
+
+    /**
+     * Get the {@code vmrange} label value of a slot.
+     */
+    public static String getSlotRange(int slot) {
+        if (slot == LOWER_SLOT) {
+            return lowerRangeBucket;
+        }
+        if (slot == UPPER_SLOT) {
+            return upperRangeBucket;
+        }
+        return ranges.get(slot - 1);
+    }
+
+    private static HistogramStorage createStorage(Mode mode) {
+        return switch (mode) {
+            case DENSE -> new DenseHistogramStorage(SLOTS_COUNT);
+            case STRIPED -> new StripedHistogramStorage(SLOTS_COUNT);
+            case SPARSE -> new SparseHistogramStorage();
+        };
     }
 
     private static void createBucketRanges() {
@@ -158,6 +255,67 @@ public class Histogram implements Metric {
         }
     }
 
+    /**
+     * Recording mode of a histogram.
+     */
+    public enum Mode {
+        /**
+         * A single preallocated bucket array guarded by a lock.
+         */
+        DENSE,
+
+        /**
+         * Lock-free per-thread stripes of buckets merged on read.
+         * Updates scale with the number of cores at the cost of a bucket array per active stripe.
+         */
+        STRIPED,
+
+        /**
+         * Buckets are allocated per decade on the first observation within the decade,
+         * guarded by a lock. Suited for registries with a large number of histograms.
+         */
+        SPARSE
+    }
+
+    /**
+     * Immutable state of a histogram: non-zero buckets, the total count and the sum of observed values.
+     */
+    public static final class Snapshot {
+
+        private final int[] slots;
+        private final long[] counts;
+        private final long count;
+        private final double sum;
+
+        private Snapshot(int[] slots, long[] counts, long count, double sum) {
+            this.slots = slots;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        /**
+         * Visit all non-zero buckets in ascending order.
+         * @param visitor Visitor callback
+         */
+        public void visit(Visitor visitor) {
+            for (int i = 0; i < slots.length; i++) {
+                visitor.value(getSlotRange(slots[i]), counts[i]);
+            }
+        }
+
+        /**
+         * Total number of observations in all buckets.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+    }
+
     @FunctionalInterface
     public interface Visitor {
         void value(String vmrange, long count);
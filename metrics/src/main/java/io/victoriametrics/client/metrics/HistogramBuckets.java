@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+/**
+ * Bucket layout of {@link Histogram}.
+ *
+ * <p>Values are mapped onto slots: slot {@code 0} is the lower range bucket {@code 0...1.000e-09},
+ * slots {@code 1..486} are the vmrange buckets and slot {@code 487} is the upper range bucket
+ * {@code 1.000e+18...+Inf}.</p>
+ *
+ * <p>{@link #slotOf(double)} doesn't compute logarithms. It compares raw IEEE-754 bits of the value with
+ * a table of bucket boundaries, which is built once from {@link #slotOfLog10(double)}, so both methods
+ * assign every value to exactly the same bucket.</p>
+ */
+public final class HistogramBuckets {
+
+    static final int E_10_MIN = -9;
+
+    static final int E_10_MAX = 18;
+
+    static final int DECIMAL_BUCKETS_COUNT = E_10_MAX - E_10_MIN;
+
+    static final int BUCKETS_PER_DECIMAL = 18;
+
+    static final int BUCKETS_COUNT = DECIMAL_BUCKETS_COUNT * BUCKETS_PER_DECIMAL;
+
+    static final int LOWER_SLOT = 0;
+
+    static final int UPPER_SLOT = BUCKETS_COUNT + 1;
+
+    static final int SLOTS_COUNT = BUCKETS_COUNT + 2;
+
+    private static final int FIRST_BUCKET_SLOT = 1;
+
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+    private static final long INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+    /**
+     * Number of low bits dropped to index the coarse table: 11 exponent bits and 4 mantissa bits remain,
+     * so a coarse cell covers 1/16 of a binary octave, which is narrower than a single bucket.
+     */
+    private static final int COARSE_SHIFT = 48;
+
+    /**
+     * Bits of the smallest value of each slot.
+     */
+    private static final long[] boundaries = new long[SLOTS_COUNT + 1];
+
+    /**
+     * Slot of the smallest value of each coarse cell.
+     */
+    private static final short[] coarse;
+
+    private static final long coarseBase;
+
+    static {
+        boundaries[LOWER_SLOT] = 0;
+        for (int slot = FIRST_BUCKET_SLOT; slot < SLOTS_COUNT; slot++) {
+            boundaries[slot] = lowestBitsOf(slot);
+        }
+        boundaries[SLOTS_COUNT] = Long.MAX_VALUE;
+
+        coarseBase = boundaries[FIRST_BUCKET_SLOT] >>> COARSE_SHIFT;
+        coarse = new short[(int) ((boundaries[UPPER_SLOT] >>> COARSE_SHIFT) - coarseBase + 1)];
+
+        int slot = FIRST_BUCKET_SLOT;
+        for (int i = 0; i < coarse.length; i++) {
+            long cellBits = Math.max((coarseBase + i) << COARSE_SHIFT, boundaries[FIRST_BUCKET_SLOT]);
+            while (boundaries[slot + 1] <= cellBits) {
+                slot++;
+            }
+            coarse[i] = (short) slot;
+        }
+    }
+
+    private HistogramBuckets() {
+    }
+
+    /**
+     * Find a slot for the value.
+     *
+     * @param value input value
+     * @return slot of the bucket
+     */
+    public static int slotOf(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits < boundaries[FIRST_BUCKET_SLOT]) {
+            // Negative values and NaN have no logarithm, so they fall into the first bucket
+            return bits < 0 && bits != NEGATIVE_ZERO_BITS ? FIRST_BUCKET_SLOT : LOWER_SLOT;
+        }
+        if (bits >= boundaries[UPPER_SLOT]) {
+            return bits > INFINITY_BITS ? FIRST_BUCKET_SLOT : UPPER_SLOT;
+        }
+
+        int slot = coarse[(int) ((bits >>> COARSE_SHIFT) - coarseBase)];
+        while (bits >= boundaries[slot + 1]) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Find a slot for the value with a logarithm.
+     * This is the reference implementation {@link #slotOf(double)} is built from.
+     *
+     * @param value input value
+     * @return slot of the bucket
+     */
+    public static int slotOfLog10(double value) {
+        double bucketIndex = (Math.log10(value) - E_10_MIN) * BUCKETS_PER_DECIMAL;
+        if (bucketIndex < 0) {
+            return LOWER_SLOT;
+        }
+        if (bucketIndex > BUCKETS_COUNT) {
+            return UPPER_SLOT;
+        }
+
+        int index = (int) bucketIndex;
+        if (bucketIndex == (double)(index) && index > 0) {
+            // Edge case for 10^n values, which must go to the lower bucket
+            // according to Prometheus logic for `le`-based histograms.
+            // -- from github.com/VictoriaMetrics/metrics v1.18.1
+            index--;
+        }
+        return index + FIRST_BUCKET_SLOT;
+    }
+
+    /**
+     * Binary search of the smallest non-negative value which falls into the slot or above.
+     * Bits of non-negative doubles are ordered the same way as the values.
+     */
+    private static long lowestBitsOf(int slot) {
+        long low = 0;
+        long high = INFINITY_BITS;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (slotOfLog10(Double.longBitsToDouble(middle)) >= slot) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+/**
+ * Storage of {@link Histogram} bucket counters.
+ *
+ * <p>Buckets are addressed by slot: slot {@code 0} is the lower range bucket,
+ * slots {@code 1..BUCKETS_COUNT} are the vmrange buckets and the last slot is the upper range bucket.</p>
+ */
+abstract class HistogramStorage {
+
+    /**
+     * Record a single observation.
+     *
+     * @param slot  bucket slot
+     * @param value observed value
+     */
+    abstract void add(int slot, double value);
+
+    /**
+     * Record the same observation several times.
+     *
+     * @param slot  bucket slot
+     * @param count number of observations
+     * @param sum   sum of observed values
+     */
+    abstract void add(int slot, long count, double sum);
+
+    /**
+     * Record a batch of observations at once. Negative values are ignored.
+     *
+     * @param values observed values
+     * @param off    offset of the first value
+     * @param len    number of values
+     */
+    abstract void add(double[] values, int off, int len);
+
+    /**
+     * Add current slot counters to {@code counts}, optionally resetting them.
+     *
+     * @param counts destination indexed by slot
+     * @param reset  whether to reset the storage
+     * @return sum of observed values
+     */
+    abstract double collect(long[] counts, boolean reset);
+
+    abstract double sum();
+
+    abstract void reset();
+}
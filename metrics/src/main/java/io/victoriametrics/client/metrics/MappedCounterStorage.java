@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.nio.ByteBuffer;
+
+import static io.victoriametrics.client.metrics.MappedMetricStore.LONG;
+
+/**
+ * Counter storage in a {@link MappedMetricStore}.
+ *
+ * <p>The value is a single long updated atomically in the mapped file, so unlike a heap counter
+ * concurrent increments contend on one cache line.</p>
+ */
+final class MappedCounterStorage implements CounterStorage {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    MappedCounterStorage(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    @Override
+    public void add(long delta) {
+        LONG.getAndAdd(buffer, offset, delta);
+    }
+
+    @Override
+    public long sum() {
+        return (long) LONG.getVolatile(buffer, offset);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.nio.ByteBuffer;
+
+import static io.victoriametrics.client.metrics.MappedMetricStore.LONG;
+
+/**
+ * Bucket storage in a {@link MappedMetricStore}: the bits of the sum followed by a counter per slot.
+ *
+ * <p>Counters and the sum are updated atomically one by one, so readers may observe an observation
+ * in a bucket before it's added to the sum.</p>
+ */
+final class MappedHistogramStorage extends HistogramStorage {
+
+    private static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+
+    private final ByteBuffer buffer;
+    private final int sumOffset;
+    private final int slotsOffset;
+    private final int slotsCount;
+
+    MappedHistogramStorage(ByteBuffer buffer, int offset, int slotsCount) {
+        this.buffer = buffer;
+        this.sumOffset = offset;
+        this.slotsOffset = offset + Long.BYTES;
+        this.slotsCount = slotsCount;
+    }
+
+    /**
+     * Size of the storage in bytes.
+     */
+    static int size(int slotsCount) {
+        return Long.BYTES + slotsCount * Long.BYTES;
+    }
+
+    @Override
+    void add(int slot, double value) {
+        LONG.getAndAdd(buffer, slotOffset(slot), 1L);
+        addSum(value);
+    }
+
+    @Override
+    void add(int slot, long count, double sum) {
+        LONG.getAndAdd(buffer, slotOffset(slot), count);
+        addSum(sum);
+    }
+
+    @Override
+    void add(double[] values, int off, int len) {
+        double total = 0;
+        for (int i = off; i < off + len; i++) {
+            final double value = values[i];
+            if (value < 0) {
+                continue;
+            }
+            LONG.getAndAdd(buffer, slotOffset(HistogramBuckets.slotOf(value)), 1L);
+            total += value;
+        }
+        addSum(total);
+    }
+
+    @Override
+    double collect(long[] counts, boolean reset) {
+        for (int slot = 0; slot < slotsCount; slot++) {
+            int offset = slotOffset(slot);
+            counts[slot] += reset
+                    ? (long) LONG.getAndSet(buffer, offset, 0L)
+                    : (long) LONG.getVolatile(buffer, offset);
+        }
+
+        long sumBits = reset
+                ? (long) LONG.getAndSet(buffer, sumOffset, ZERO_BITS)
+                : (long) LONG.getVolatile(buffer, sumOffset);
+        return Double.longBitsToDouble(sumBits);
+    }
+
+    @Override
+    double sum() {
+        return Double.longBitsToDouble((long) LONG.getVolatile(buffer, sumOffset));
+    }
+
+    @Override
+    void reset() {
+        for (int slot = 0; slot < slotsCount; slot++) {
+            LONG.setVolatile(buffer, slotOffset(slot), 0L);
+        }
+        LONG.setVolatile(buffer, sumOffset, ZERO_BITS);
+    }
+
+    private void addSum(double value) {
+        long current;
+        long next;
+        do {
+            current = (long) LONG.getVolatile(buffer, sumOffset);
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + value);
+        } while (!LONG.compareAndSet(buffer, sumOffset, current, next));
+    }
+
+    private int slotOffset(int slot) {
+        return slotsOffset + slot * Long.BYTES;
+    }
+}
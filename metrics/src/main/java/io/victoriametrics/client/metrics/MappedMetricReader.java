@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import io.victoriametrics.client.serialization.PrometheusSerializationStrategy;
+import io.victoriametrics.client.serialization.SerializationStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of a {@link MappedMetricStore} file, e.g. for a sidecar which exposes metrics of another process
+ * or for inspection of the values left by a stopped process.
+ *
+ * <p>The file is mapped once, and records added by the writing process since the previous read are picked up
+ * on every read. Values are read directly from the mapping without locking the writer.</p>
+ */
+public final class MappedMetricReader implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final SerializationStrategy serializationStrategy = new PrometheusSerializationStrategy();
+
+    /**
+     * Metrics of records read so far, guarded by {@code this}.
+     */
+    private final List<Metric> metrics = new ArrayList<>();
+    private int scanned = MappedMetricStore.HEADER_SIZE;
+
+    private MappedMetricReader(Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Open a store file for reading.
+     *
+     * @throws IOException if the file can't be mapped or has an unsupported layout
+     */
+    public static MappedMetricReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            MappedMetricStore.readHeader(buffer, file);
+            return new MappedMetricReader(file, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Render current values in the Prometheus text exposition format.
+     * @param out destination, which is not closed
+     */
+    public synchronized void write(OutputStream out) throws IOException {
+        refresh();
+        serializationStrategy.serialize(metrics, out);
+    }
+
+    /**
+     * Render current values in the Prometheus text exposition format.
+     * @param writer destination
+     */
+    public synchronized void write(Writer writer) throws IOException {
+        refresh();
+        for (Metric metric : metrics) {
+            serializationStrategy.serialize(metric, writer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void refresh() throws IOException {
+        int used = MappedMetricStore.readHeader(buffer, file);
+        List<Metric> added = new ArrayList<>();
+        MappedMetricStore.scan(buffer, scanned, used, file, (offset, type, name, slots, dataOffset) -> {
+            MetricName metricName;
+            try {
+                metricName = MetricName.parse(name);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid metric name " + name + " in " + file, e);
+            }
+
+            if (type == MappedMetricStore.COUNTER) {
+                added.add(new Counter(metricName, new MappedCounterStorage(buffer, dataOffset)));
+            } else if (type == MappedMetricStore.HISTOGRAM && slots == Histogram.getSlotsCount()) {
+                added.add(new Histogram(metricName, new MappedHistogramStorage(buffer, dataOffset, slots)));
+            } else {
+                throw new IOException("Unsupported record of " + name + " in " + file);
+            }
+        });
+        metrics.addAll(added);
+        scanned = used;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Store of counters and histograms in a memory-mapped file.
+ *
+ * <p>Values are updated atomically in the mapped file instead of the heap, so they survive restarts
+ * of the process, and other processes can read them with {@link MappedMetricReader}.
+ * A metric created with the name of an existing record continues from its stored values.
+ * Names which differ only in label separators share a record.
+ * Metrics are created against a store with {@code withStore} of registry builders, with the store overloads
+ * of {@code getOrCreateCounter} and {@code getOrCreateHistogram}, or with {@link #counter(MetricName)}
+ * and {@link #histogram(MetricName)} as factories of metric families:</p>
+ *
+ * <blockquote><pre>
+ *  MappedMetricStore store = MappedMetricStore.open(Path.of("/var/lib/app/metrics.bin"), 16 * 1024 * 1024);
+ *  Counter requests = registry.createCounter()
+ *          .withStore(store)
+ *          .name("requests_total")
+ *          .register();
+ *  MetricFamily&lt;Counter&gt; errors = registry.createFamily("errors_total", store::counter, "path");
+ * </pre></blockquote>
+ *
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes: magic, layout version, file size and the end
+ * of used space. Records follow the header, each with its length, type, length of the name, number of histogram
+ * slots and the UTF-8 name, padded to 8 bytes, followed by a long value of a counter or by the sum and
+ * slot counters of a histogram. All numbers are little-endian. A record is published by advancing the end
+ * of used space after it's written, so readers never observe partial records.
+ * Records are never removed, and the file size is fixed when it's created.</p>
+ *
+ * <p>Only one process may open a file as a store at a time.</p>
+ */
+public final class MappedMetricStore implements Closeable {
+
+    static final int MAGIC = 0x534d4d56;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SIZE_OFFSET = 8;
+    static final int USED_OFFSET = 16;
+
+    static final int RECORD_HEADER_SIZE = 16;
+    static final int COUNTER = 1;
+    static final int HISTOGRAM = 2;
+
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    /**
+     * Offsets of records by metric name, guarded by {@code this}.
+     */
+    private final Map<String, Integer> records = new HashMap<>();
+    private int used;
+
+    private MappedMetricStore(Path file, FileChannel channel, FileLock lock, MappedByteBuffer buffer, int size) {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Open a store, creating the file if it doesn't exist.
+     *
+     * @param file path of the file
+     * @param size size of a new file in bytes, the size of an existing file is kept
+     * @throws IOException if the file can't be mapped, is locked by another store or has an unsupported layout
+     */
+    public static MappedMetricStore open(Path file, int size) throws IOException {
+        if (size < HEADER_SIZE) {
+            throw new IllegalArgumentException("Size must be at least " + HEADER_SIZE + " bytes");
+        }
+
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = tryLock(channel, file);
+            boolean created = channel.size() == 0;
+            long fileSize = created ? size : channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Metric store " + file + " is larger than 2GB");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            MappedMetricStore store = new MappedMetricStore(file, channel, lock, buffer, (int) fileSize);
+            if (created) {
+                store.initialize();
+            } else {
+                store.load();
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write changes of the mapped file to the storage device.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Write changes to the storage device and release the file.
+     * Metrics of the store remain usable until they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Create a counter backed by the record of {@code name}, creating the record if it doesn't exist.
+     * The counter isn't registered in a registry.
+     *
+     * @throws IllegalArgumentException if the record has another type
+     * @throws IllegalStateException    if the file is full
+     */
+    public Counter counter(MetricName name) {
+        int offset = record(name, COUNTER, 0, Long.BYTES);
+        return new Counter(name, new MappedCounterStorage(buffer, offset));
+    }
+
+    /**
+     * Create a histogram backed by the record of {@code name}, creating the record if it doesn't exist.
+     * The histogram isn't registered in a registry.
+     *
+     * @throws IllegalArgumentException if the record has another type
+     * @throws IllegalStateException    if the file is full
+     */
+    public Histogram histogram(MetricName name) {
+        int slots = Histogram.getSlotsCount();
+        int offset = record(name, HISTOGRAM, slots, MappedHistogramStorage.size(slots));
+        return new Histogram(name, new MappedHistogramStorage(buffer, offset, slots));
+    }
+
+    /**
+     * Find the record of a metric or allocate a new one.
+     *
+     * @return offset of the data of the record
+     */
+    private synchronized int record(MetricName name, int type, int slots, int dataSize) {
+        String key = name.toCanonicalString();
+        Integer existing = records.get(key);
+        if (existing != null) {
+            int recordType = buffer.getInt(existing + 4);
+            if (recordType != type || buffer.getInt(existing + 12) != slots) {
+                throw new IllegalArgumentException("Metric " + key + " is stored in " + file + " with another type");
+            }
+            return dataOffset(existing, buffer.getInt(existing + 8));
+        }
+
+        byte[] nameBytes = key.getBytes(StandardCharsets.UTF_8);
+        int offset = used;
+        int dataOffset = dataOffset(offset, nameBytes.length);
+        int length = dataOffset - offset + dataSize;
+        if (length > size - offset) {
+            throw new IllegalStateException("Metric store " + file + " is full");
+        }
+
+        buffer.putInt(offset, length);
+        buffer.putInt(offset + 4, type);
+        buffer.putInt(offset + 8, nameBytes.length);
+        buffer.putInt(offset + 12, slots);
+        buffer.put(offset + RECORD_HEADER_SIZE, nameBytes);
+        // the space may hold a record which wasn't published before a crash
+        for (int i = dataOffset; i < offset + length; i += Long.BYTES) {
+            buffer.putLong(i, 0L);
+        }
+
+        used = offset + length;
+        LONG.setRelease(buffer, USED_OFFSET, (long) used);
+        records.put(key, offset);
+        return dataOffset;
+    }
+
+    private void initialize() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putLong(SIZE_OFFSET, size);
+        used = HEADER_SIZE;
+        LONG.setRelease(buffer, USED_OFFSET, (long) used);
+    }
+
+    private void load() throws IOException {
+        used = readHeader(buffer, file);
+        scan(buffer, HEADER_SIZE, used, file, (offset, type, name, slots, dataOffset) -> records.put(name, offset));
+    }
+
+    /**
+     * Validate the header of a file.
+     *
+     * @return end of used space
+     */
+    static int readHeader(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(file + " is not a metric store");
+        }
+
+        int version = buffer.getInt(VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of metric store " + file);
+        }
+
+        long used = (long) LONG.getAcquire(buffer, USED_OFFSET);
+        if (buffer.getLong(SIZE_OFFSET) != buffer.capacity() || used < HEADER_SIZE || used > buffer.capacity()) {
+            throw new IOException("Metric store " + file + " is corrupted");
+        }
+        return (int) used;
+    }
+
+    /**
+     * Visit records between two offsets.
+     */
+    static void scan(ByteBuffer buffer, int from, int to, Path file, RecordVisitor visitor) throws IOException {
+        int offset = from;
+        while (offset < to) {
+            int length = buffer.getInt(offset);
+            int type = buffer.getInt(offset + 4);
+            int nameLength = buffer.getInt(offset + 8);
+            int slots = buffer.getInt(offset + 12);
+            if (length < RECORD_HEADER_SIZE || length > to - offset || nameLength < 0
+                    || nameLength > length - RECORD_HEADER_SIZE) {
+                throw new IOException("Metric store " + file + " is corrupted at offset " + offset);
+            }
+
+            byte[] name = new byte[nameLength];
+            buffer.get(offset + RECORD_HEADER_SIZE, name);
+            visitor.record(offset, type, new String(name, StandardCharsets.UTF_8), slots,
+                    dataOffset(offset, nameLength));
+            offset += length;
+        }
+    }
+
+    private static int dataOffset(int offset, int nameLength) {
+        return offset + ((RECORD_HEADER_SIZE + nameLength + Long.BYTES - 1) & -Long.BYTES);
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("Metric store " + file + " is already open");
+        }
+        return lock;
+    }
+
+    interface RecordVisitor {
+        void record(int offset, int type, String name, int slots, int dataOffset) throws IOException;
+    }
+}
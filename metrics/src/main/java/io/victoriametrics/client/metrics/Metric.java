@@ -8,6 +8,22 @@ public interface Metric {
 
     String getName();
 
+    /**
+     * Parsed name of the metric.
+     */
+    default MetricName getMetricName() {
+        return MetricName.parse(getName());
+    }
+
     void accept(MetricVisitor visitor);
 
+    /**
+     * Epoch of the last modification of the metric for {@link DeltaExport}.
+     * Metrics which don't track modifications, like gauges computed on demand,
+     * return {@link Long#MAX_VALUE}, so they are always exported.
+     */
+    default long getModificationEpoch() {
+        return Long.MAX_VALUE;
+    }
+
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Group of metrics with the same name and label names, which differ by label values.
+ *
+ * <p>Label names are declared once, and a child metric is resolved by label values:</p>
+ * <blockquote><pre>
+ *  MetricFamily&lt;Counter&gt; requests = registry.createCounterFamily("requests_total", "method", "path");
+ *  requests.labels("GET", "/api").inc();
+ * </pre></blockquote>
+ *
+ * <p>Children are looked up in a hash index by label values without building a metric name,
+ * so a lookup of an existing child doesn't allocate. A {@link MetricName} is built and label values are escaped
+ * only when a child is created, and the child is registered in the registry under that name.
+ * Names of all children share the array of label names.</p>
+ *
+ * @param <T> Type of child metrics
+ */
+public final class MetricFamily<T extends Metric> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String name;
+    private final String[] labelNames;
+    private final Function<MetricName, T> factory;
+
+    /**
+     * Hash index of children. Chains are immutable, so readers don't need a lock.
+     */
+    private volatile AtomicReferenceArray<Child<T>> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * @param factory Function which creates or gets a registered metric by its name
+     */
+    MetricFamily(String name, String[] labelNames, Function<MetricName, T> factory) {
+        this.name = name.intern();
+        this.labelNames = labelNames.clone();
+        this.factory = Objects.requireNonNull(factory);
+        if (this.labelNames.length == 0) {
+            throw new IllegalArgumentException("Metric family must have at least one label");
+        }
+
+        Set<String> unique = new HashSet<>();
+        for (String labelName : this.labelNames) {
+            if (!unique.add(Objects.requireNonNull(labelName))) {
+                throw new IllegalArgumentException("Duplicate label name " + labelName);
+            }
+        }
+        for (int i = 0; i < this.labelNames.length; i++) {
+            this.labelNames[i] = this.labelNames[i].intern();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getLabelNames() {
+        return List.of(labelNames);
+    }
+
+    /**
+     * Get a child metric of a family with a single label or create a new one if it doesn't exist.
+     */
+    public T labels(String value) {
+        checkLabelsCount(1);
+        int hash = hash(value.hashCode());
+
+        for (Child<T> child = bucket(hash); child != null; child = child.next) {
+            if (child.hash == hash && child.values[0].equals(value)) {
+                return child.metric;
+            }
+        }
+        return create(new String[]{value}, hash);
+    }
+
+    /**
+     * Get a child metric of a family with two labels or create a new one if it doesn't exist.
+     */
+    public T labels(String value1, String value2) {
+        checkLabelsCount(2);
+        int hash = hash(31 * value1.hashCode() + value2.hashCode());
+
+        for (Child<T> child = bucket(hash); child != null; child = child.next) {
+            if (child.hash == hash && child.values[0].equals(value1) && child.values[1].equals(value2)) {
+                return child.metric;
+            }
+        }
+        return create(new String[]{value1, value2}, hash);
+    }
+
+    /**
+     * Get a child metric of a family with three labels or create a new one if it doesn't exist.
+     */
+    public T labels(String value1, String value2, String value3) {
+        checkLabelsCount(3);
+        int hash = hash(31 * (31 * value1.hashCode() + value2.hashCode()) + value3.hashCode());
+
+        for (Child<T> child = bucket(hash); child != null; child = child.next) {
+            if (child.hash == hash && child.values[0].equals(value1) && child.values[1].equals(value2)
+                    && child.values[2].equals(value3)) {
+                return child.metric;
+            }
+        }
+        return create(new String[]{value1, value2, value3}, hash);
+    }
+
+    /**
+     * Get a child metric by label values in the order of label names or create a new one if it doesn't exist.
+     */
+    public T labels(String... values) {
+        checkLabelsCount(values.length);
+        int hash = hash(values);
+
+        for (Child<T> child = bucket(hash); child != null; child = child.next) {
+            if (child.hash == hash && child.matches(values)) {
+                return child.metric;
+            }
+        }
+        return create(values.clone(), hash);
+    }
+
+    private Child<T> bucket(int hash) {
+        AtomicReferenceArray<Child<T>> table = this.table;
+        return table.get(hash & (table.length() - 1));
+    }
+
+    private synchronized T create(String[] values, int hash) {
+        for (Child<T> child = bucket(hash); child != null; child = child.next) {
+            if (child.hash == hash && child.matches(values)) {
+                return child.metric;
+            }
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].intern();
+        }
+        T metric = factory.apply(MetricName.withInternedLabelNames(name, labelNames, values));
+
+        AtomicReferenceArray<Child<T>> table = this.table;
+        if (size >= table.length() * 3 / 4) {
+            table = resize(table);
+        }
+        int index = hash & (table.length() - 1);
+        table.set(index, new Child<>(values, hash, metric, table.get(index)));
+        size++;
+
+        return metric;
+    }
+
+    private AtomicReferenceArray<Child<T>> resize(AtomicReferenceArray<Child<T>> table) {
+        AtomicReferenceArray<Child<T>> resized = new AtomicReferenceArray<>(table.length() * 2);
+        for (int i = 0; i < table.length(); i++) {
+            for (Child<T> child = table.get(i); child != null; child = child.next) {
+                int index = child.hash & (resized.length() - 1);
+                resized.set(index, new Child<>(child.values, child.hash, child.metric, resized.get(index)));
+            }
+        }
+        this.table = resized;
+        return resized;
+    }
+
+    private void checkLabelsCount(int count) {
+        if (count != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length + " label values for " + name
+                    + ", got " + count);
+        }
+    }
+
+    private static int hash(String[] values) {
+        int hash = 0;
+        for (String value : values) {
+            hash = 31 * hash + value.hashCode();
+        }
+        return hash(hash);
+    }
+
+    private static int hash(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Child<T> {
+        private final String[] values;
+        private final int hash;
+        private final T metric;
+        private final Child<T> next;
+
+        private Child(String[] values, int hash, T metric, Child<T> next) {
+            this.values = values;
+            this.hash = hash;
+            this.metric = metric;
+            this.next = next;
+        }
+
+        private boolean matches(String[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (!this.values[i].equals(values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import io.victoriametrics.client.validator.MetricNameValidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Parsed metric name: a name without labels and an ordered list of labels.
+ *
+ * <p>Names, label names and label values are interned, so series sharing a label value,
+ * e.g. {@code instance} or {@code path}, share a single string.
+ * Label values are kept as they are written in the exposition format, with {@code \}, {@code "}
+ * and line feed characters escaped.</p>
+ *
+ * <p>The full name, e.g. {@code foo{bar="baz", a="b"}}, is rendered by {@link #toString()} on demand
+ * and is not retained. Labels are separated by {@code ", "}, or by {@code ","} if the parsed name
+ * used that separator, so names are exposed the way they were given. Names which differ only
+ * in separators are equal.</p>
+ */
+public final class MetricName {
+
+    private static final String[] NO_LABELS = new String[0];
+
+    private static final String SEPARATOR = ", ";
+    private static final String COMPACT_SEPARATOR = ",";
+
+    private static final MetricNameValidator validator = new MetricNameValidator();
+
+    private final String name;
+    private final String[] labelNames;
+    private final String[] labelValues;
+    private final int hash;
+    private final boolean compact;
+
+    /**
+     * Arrays are not copied, label names are expected to be interned.
+     */
+    private MetricName(String name, String[] labelNames, String[] labelValues) {
+        this(name, labelNames, labelValues, false);
+    }
+
+    private MetricName(String name, String[] labelNames, String[] labelValues, boolean compact) {
+        this.name = name;
+        this.labelNames = labelNames;
+        this.labelValues = labelValues;
+        this.compact = compact;
+        this.hash = 31 * (31 * name.hashCode() + Arrays.hashCode(labelNames)) + Arrays.hashCode(labelValues);
+    }
+
+    /**
+     * Parse and validate a full metric name, e.g. {@code foo{bar="baz"}}.
+     *
+     * @throws io.victoriametrics.client.validator.InvalidMetricNameException If the metric name is invalid
+     */
+    public static MetricName parse(String name) {
+        Parser parser = new Parser();
+        validator.validate(name, parser);
+        return parser.build();
+    }
+
+    /**
+     * Create a name from parts without validation.
+     *
+     * @param labelNames  names of labels
+     * @param labelValues values of labels, which are escaped if needed
+     */
+    public static MetricName of(String name, String[] labelNames, String[] labelValues) {
+        if (labelNames.length != labelValues.length) {
+            throw new IllegalArgumentException("Label names and values must have the same length");
+        }
+        if (labelNames.length == 0) {
+            return new MetricName(name.intern(), NO_LABELS, NO_LABELS);
+        }
+
+        String[] names = new String[labelNames.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = labelNames[i].intern();
+        }
+        return withInternedLabelNames(name.intern(), names, labelValues);
+    }
+
+    /**
+     * Create a name of a series of a family, sharing the array of interned label names between series.
+     */
+    static MetricName withInternedLabelNames(String name, String[] labelNames, String[] labelValues) {
+        String[] values = new String[labelValues.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = escape(labelValues[i]).intern();
+        }
+        return new MetricName(name, labelNames, values);
+    }
+
+    /**
+     * Name without labels.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getLabelsCount() {
+        return labelNames.length;
+    }
+
+    public String getLabelName(int index) {
+        return labelNames[index];
+    }
+
+    /**
+     * Escaped label value.
+     */
+    public String getLabelValue(int index) {
+        return labelValues[index];
+    }
+
+    /**
+     * Raw label value, with escape sequences of the exposition format resolved.
+     */
+    public String getUnescapedLabelValue(int index) {
+        return unescape(labelValues[index]);
+    }
+
+    /**
+     * Separator of labels in the rendered name.
+     */
+    public String getLabelSeparator() {
+        return compact ? COMPACT_SEPARATOR : SEPARATOR;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricName)) {
+            return false;
+        }
+
+        MetricName that = (MetricName) o;
+        return hash == that.hash
+                && name.equals(that.name)
+                && Arrays.equals(labelNames, that.labelNames)
+                && Arrays.equals(labelValues, that.labelValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Render the full name in the exposition format.
+     */
+    @Override
+    public String toString() {
+        return toString(getLabelSeparator());
+    }
+
+    /**
+     * Render the full name with labels separated by {@code ","}, which is the same for all equal names.
+     */
+    String toCanonicalString() {
+        return toString(COMPACT_SEPARATOR);
+    }
+
+    private String toString(String separator) {
+        if (labelNames.length == 0) {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder(name).append('{');
+        for (int i = 0; i < labelNames.length; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            sb.append(labelNames[i]).append("=\"").append(labelValues[i]).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Escape a label value for the exposition format.
+     */
+    static String escape(String value) {
+        Objects.requireNonNull(value, "Label value cannot be null");
+
+        int i = 0;
+        while (i < value.length() && !needsEscaping(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+
+        StringBuilder sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Resolve escape sequences of a label value in the exposition format.
+     * Unknown sequences are kept as is.
+     */
+    static String unescape(String value) {
+        int i = value.indexOf('\\');
+        if (i < 0) {
+            return value;
+        }
+
+        StringBuilder sb = new StringBuilder(value.length()).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case '\\', '"' -> sb.append(next);
+                case 'n' -> sb.append('\n');
+                default -> sb.append(c).append(next);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsEscaping(char c) {
+        return c == '\\' || c == '"' || c == '\n';
+    }
+
+    private static final class Parser implements MetricNameValidator.PartsConsumer {
+
+        private String name;
+        private final List<String> labelNames = new ArrayList<>(4);
+        private final List<String> labelValues = new ArrayList<>(4);
+        private boolean compact;
+
+        @Override
+        public void metricName(String name, int end) {
+            this.name = (end == name.length() ? name : name.substring(0, end)).intern();
+        }
+
+        @Override
+        public void label(String name, int labelStart, int labelEnd, int valueStart, int valueEnd) {
+            if (labelNames.size() == 1) {
+                compact = name.charAt(labelStart - 1) == ',';
+            }
+            labelNames.add(name.substring(labelStart, labelEnd).intern());
+            labelValues.add(name.substring(valueStart, valueEnd).intern());
+        }
+
+        private MetricName build() {
+            if (labelNames.isEmpty()) {
+                return new MetricName(name, NO_LABELS, NO_LABELS);
+            }
+            return new MetricName(name, labelNames.toArray(NO_LABELS), labelValues.toArray(NO_LABELS), compact);
+        }
+    }
+}
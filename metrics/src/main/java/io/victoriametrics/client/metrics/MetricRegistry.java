@@ -1,15 +1,31 @@
 package io.victoriametrics.client.metrics;
 
+import io.victoriametrics.client.serialization.MetricSerializationException;
 import io.victoriametrics.client.serialization.PrometheusSerializationStrategy;
 import io.victoriametrics.client.serialization.SerializationStrategy;
+import io.victoriametrics.client.serialization.StreamSerializationStrategy;
 import io.victoriametrics.client.validator.MetricNameValidator;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
@@ -18,11 +34,36 @@ import java.util.function.Supplier;
  */
 public final class MetricRegistry {
 
-    private final Map<String, Metric> collection = new ConcurrentHashMap<>();
+    private final Map<MetricName, Metric> collection = new ConcurrentHashMap<>();
+
+    /**
+     * Metrics created by {@code getOrCreate*} methods by the full names they were created with,
+     * so that existing metrics are found without parsing the name. There is at most one name per metric,
+     * and it's the string the metric name was parsed from, so the map doesn't copy names.
+     */
+    private final Map<String, Metric> collectionByName = new ConcurrentHashMap<>();
     private final MetricNameValidator validator = new MetricNameValidator();
 
     private SerializationStrategy serializationStrategy = new PrometheusSerializationStrategy();
 
+    /**
+     * Minimum number of metrics in a shard of a parallel write.
+     */
+    private static final int MIN_SHARD_SIZE = 4096;
+
+    /**
+     * Maximum size of a shard buffer kept for reuse, so a single large export doesn't pin its peak memory.
+     */
+    static final int MAX_IDLE_SHARD_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Buffers of shards of the last parallel write, reused by the next one.
+     * Buffers which grew above {@link #MAX_IDLE_SHARD_BUFFER_SIZE} are dropped and leave empty slots.
+     */
+    private final AtomicReference<ByteArrayOutputStream[]> idleShardBuffers = new AtomicReference<>();
+
+    private volatile RotationScheduler rotationScheduler;
+
     private MetricRegistry() {
     }
 
@@ -51,6 +92,15 @@ public final class MetricRegistry {
         return new CounterBuilder();
     }
 
+    /**
+     * Define a FloatCounter builder.
+     *
+     * @return {@link FloatCounterBuilder}
+     */
+    public FloatCounterBuilder createFloatCounter() {
+        return new FloatCounterBuilder();
+    }
+
     /**
      * Define a Gauge builder.
      *
@@ -60,6 +110,15 @@ public final class MetricRegistry {
         return new GaugeBuilder();
     }
 
+    /**
+     * Define a SettableGauge builder.
+     *
+     * @return {@link SettableGaugeBuilder}
+     */
+    public SettableGaugeBuilder createSettableGauge() {
+        return new SettableGaugeBuilder();
+    }
+
     /**
      * Define a Histogram builder.
      *
@@ -69,16 +128,51 @@ public final class MetricRegistry {
         return new HistogramBuilder();
     }
 
+    /**
+     * Define a Summary builder.
+     *
+     * @return {@link SummaryBuilder}
+     */
+    public SummaryBuilder createSummary() {
+        return new SummaryBuilder();
+    }
+
     /**
      * Get {@link Counter} metric or create a new one if it doesn't exist.
      * @param name A metric name
      * @return {@link Counter} if metric name is valid.
      */
     public Counter getOrCreateCounter(String name) {
-        return (Counter) collection.computeIfAbsent(name, key -> {
-            validator.validate(key);
-            return new Counter(key);
-        });
+        return (Counter) getOrCreate(name, Counter::new);
+    }
+
+    /**
+     * Get {@link Counter} metric or create a new one in {@code store} if it doesn't exist.
+     * @param name A metric name
+     * @param store Store which keeps the value of a new counter
+     * @return {@link Counter} if metric name is valid.
+     */
+    public Counter getOrCreateCounter(String name, MappedMetricStore store) {
+        Objects.requireNonNull(store);
+        return (Counter) getOrCreate(name, store::counter);
+    }
+
+    /**
+     * Get {@link FloatCounter} metric or create a new one if it doesn't exist.
+     * @param name A metric name
+     * @return {@link FloatCounter} if metric name is valid.
+     */
+    public FloatCounter getOrCreateFloatCounter(String name) {
+        return (FloatCounter) getOrCreate(name, FloatCounter::new);
+    }
+
+    /**
+     * Get {@link SettableGauge} metric or create a new one if it doesn't exist.
+     * @param name A metric name
+     * @return {@link SettableGauge} if metric name is valid.
+     */
+    public SettableGauge getOrCreateSettableGauge(String name) {
+        return (SettableGauge) getOrCreate(name, SettableGauge::new);
     }
 
     /**
@@ -87,10 +181,37 @@ public final class MetricRegistry {
      * @return {@link Gauge} if metric name is valid.
      */
     public Gauge getOrCreateGauge(String name, Supplier<Double> supplier) {
-        return (Gauge) collection.computeIfAbsent(name, key -> {
-            validator.validate(key);
-            return new Gauge(key, supplier);
-        });
+        return (Gauge) getOrCreate(name, key -> new Gauge(key, Gauge.unbox(supplier)));
+    }
+
+    /**
+     * Get {@link Gauge} metric or create a new one if it doesn't exist.
+     * @param name A metric name
+     * @return {@link Gauge} if metric name is valid.
+     */
+    public Gauge getOrCreateGauge(String name, DoubleSupplier supplier) {
+        return (Gauge) getOrCreate(name, key -> new Gauge(key, supplier));
+    }
+
+    /**
+     * Get {@link Gauge} metric or create a new one if it doesn't exist.
+     * @param name A metric name
+     * @return {@link Gauge} if metric name is valid.
+     */
+    public Gauge getOrCreateGauge(String name, LongSupplier supplier) {
+        return (Gauge) getOrCreate(name, key -> new Gauge(key, Gauge.widen(supplier)));
+    }
+
+    /**
+     * Get {@link Gauge} metric or create a new one if it doesn't exist.
+     * Creates {@link Gauge} which reads a cached value and refreshes it in background.
+     * @param name A metric name
+     * @param maxAge Age of the value after which it is refreshed
+     * @return {@link Gauge} if metric name is valid.
+     */
+    public Gauge getOrCreateGauge(String name, DoubleSupplier supplier, Duration maxAge) {
+        return (Gauge) getOrCreate(name,
+                key -> new Gauge(key, supplier, maxAge, CachedDoubleSupplier.DEFAULT_EXECUTOR));
     }
 
     /**
@@ -99,10 +220,28 @@ public final class MetricRegistry {
      * @return {@link Histogram} if metric name is valid.
      */
     public Histogram getOrCreateHistogram(String name) {
-        return (Histogram) collection.computeIfAbsent(name, key -> {
-            validator.validate(name);
-            return new Histogram(key);
-        });
+        return (Histogram) getOrCreate(name, Histogram::new);
+    }
+
+    /**
+     * Get {@link Histogram} metric or create a new one with given recording mode if it doesn't exist.
+     * @param name A metric name
+     * @param mode Recording mode of a new histogram
+     * @return {@link Histogram} if metric name is valid.
+     */
+    public Histogram getOrCreateHistogram(String name, Histogram.Mode mode) {
+        return (Histogram) getOrCreate(name, key -> new Histogram(key, mode));
+    }
+
+    /**
+     * Get {@link Histogram} metric or create a new one in {@code store} if it doesn't exist.
+     * @param name A metric name
+     * @param store Store which keeps buckets of a new histogram
+     * @return {@link Histogram} if metric name is valid.
+     */
+    public Histogram getOrCreateHistogram(String name, MappedMetricStore store) {
+        Objects.requireNonNull(store);
+        return (Histogram) getOrCreate(name, store::histogram);
     }
 
     /**
@@ -112,10 +251,8 @@ public final class MetricRegistry {
      * @return {@link Histogram} if metric name is valid.
      */
     public Summary getOrCreateSummary(String name) {
-        return (Summary) collection.computeIfAbsent(name, key-> {
-            validator.validate(key);
-            return new Summary(key);
-        });
+        return (Summary) getOrCreate(name, key -> new Summary(key, Summary.DEFAULT_QUANTILES,
+                Summary.DEFAULT_MAX_AGE, Summary.DEFAULT_AGE_BUCKETS, Double.NaN, false, rotationScheduler));
     }
 
     /**
@@ -125,10 +262,134 @@ public final class MetricRegistry {
      * @return {@link Histogram} if metric name is valid.
      */
     public Summary getOrCreateSummary(String name, double[] quantiles, int windows, Duration window) {
-        return (Summary) collection.computeIfAbsent(name, key-> {
-            validator.validate(key);
-            return new Summary(key, quantiles, window, windows);
+        return (Summary) getOrCreate(name,
+                key -> new Summary(key, quantiles, window, windows, Double.NaN, false, rotationScheduler));
+    }
+
+    /**
+     * Get {@link Summary} metric or create a new one if it doesn't exist.
+     * Creates {@link Summary} which estimates quantiles with the given relative accuracy
+     * using a bounded amount of memory.
+     * @param name A metric name
+     * @param relativeAccuracy Maximum relative error of quantile values
+     * @return {@link Summary} if metric name is valid.
+     */
+    public Summary getOrCreateSummary(String name, double[] quantiles, int windows, Duration window,
+                                      double relativeAccuracy) {
+        return (Summary) getOrCreate(name,
+                key -> new Summary(key, quantiles, window, windows, relativeAccuracy, false, rotationScheduler));
+    }
+
+    /**
+     * Define a family of {@link Counter} metrics with the given label names.
+     * @param name A metric name without labels
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public MetricFamily<Counter> createCounterFamily(String name, String... labelNames) {
+        return createFamily(name, Counter::new, labelNames);
+    }
+
+    /**
+     * Define a family of {@link FloatCounter} metrics with the given label names.
+     * @param name A metric name without labels
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public MetricFamily<FloatCounter> createFloatCounterFamily(String name, String... labelNames) {
+        return createFamily(name, FloatCounter::new, labelNames);
+    }
+
+    /**
+     * Define a family of {@link SettableGauge} metrics with the given label names.
+     * @param name A metric name without labels
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public MetricFamily<SettableGauge> createSettableGaugeFamily(String name, String... labelNames) {
+        return createFamily(name, SettableGauge::new, labelNames);
+    }
+
+    /**
+     * Define a family of {@link Histogram} metrics with the given label names.
+     * @param name A metric name without labels
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public MetricFamily<Histogram> createHistogramFamily(String name, String... labelNames) {
+        return createFamily(name, Histogram::new, labelNames);
+    }
+
+    /**
+     * Define a family of {@link Summary} metrics with default configuration and the given label names.
+     * @param name A metric name without labels
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public MetricFamily<Summary> createSummaryFamily(String name, String... labelNames) {
+        return createFamily(name, key -> new Summary(key, Summary.DEFAULT_QUANTILES, Summary.DEFAULT_MAX_AGE,
+                Summary.DEFAULT_AGE_BUCKETS, Double.NaN, false, rotationScheduler), labelNames);
+    }
+
+    /**
+     * Define a family of metrics with the given label names.
+     * Child metrics are created by {@code factory} and registered in the registry.
+     * @param name A metric name without labels
+     * @param factory Function which creates a metric by its name
+     * @param labelNames Names of labels which distinguish metrics of the family
+     * @return {@link MetricFamily} if metric and label names are valid.
+     */
+    public <T extends Metric> MetricFamily<T> createFamily(String name, Function<MetricName, T> factory,
+                                                           String... labelNames) {
+        validator.validate(name);
+        if (name.indexOf('{') >= 0) {
+            throw new IllegalArgumentException("Metric family name must not contain labels: " + name);
+        }
+
+        MetricFamily<T> family = new MetricFamily<>(name, labelNames, key -> {
+            @SuppressWarnings("unchecked")
+            T metric = (T) getOrRegister(key, factory);
+            return metric;
         });
+
+        StringBuilder sample = new StringBuilder(name).append('{');
+        for (int i = 0; i < labelNames.length; i++) {
+            sample.append(i > 0 ? ", " : "").append(labelNames[i]).append("=\"\"");
+        }
+        validator.validate(sample.append('}').toString());
+
+        return family;
+    }
+
+    /**
+     * Get a metric by its full name or create a new one with {@code factory} if it doesn't exist.
+     * Existing metrics are looked up without locking. The name is parsed only if it differs
+     * from the one the metric was created with, e.g. in label separators, or if the metric was built.
+     */
+    private Metric getOrCreate(String name, Function<MetricName, ? extends Metric> factory) {
+        Metric metric = collectionByName.get(name);
+        if (metric != null) {
+            return metric;
+        }
+
+        MetricName metricName = MetricName.parse(name);
+        metric = getOrRegister(metricName, factory);
+        if (metric.getMetricName() == metricName) {
+            collectionByName.putIfAbsent(name, metric);
+        }
+        return metric;
+    }
+
+    /**
+     * Get a metric or create a new one with {@code factory} if it doesn't exist.
+     */
+    private Metric getOrRegister(MetricName name, Function<MetricName, ? extends Metric> factory) {
+        Metric metric = collection.get(name);
+        if (metric != null) {
+            return metric;
+        }
+
+        return collection.computeIfAbsent(name, factory);
     }
 
     /**
@@ -140,6 +401,142 @@ public final class MetricRegistry {
         metrics.forEach(metric -> serializationStrategy.serialize(metric, writer));
     }
 
+    /**
+     * Serialize metric values according to {@link #serializationStrategy} as UTF-8 text.
+     * Prefer this method over {@link #write(Writer)} to expose metrics over the network,
+     * as the default strategy writes bytes without intermediate strings.
+     * @param out destination, which is not closed
+     */
+    public void write(OutputStream out) {
+        serializationStrategy.serialize(collection.values(), out);
+    }
+
+    /**
+     * Serialize metric values according to {@code strategy} instead of {@link #serializationStrategy},
+     * e.g. to push metrics in a different format than they are exposed.
+     * @param out      destination, which is not closed
+     * @param strategy strategy to serialize metrics with
+     */
+    public void write(OutputStream out, StreamSerializationStrategy strategy) {
+        strategy.serialize(collection.values(), out);
+    }
+
+    /**
+     * Create an export of metrics which changed since its previous export, e.g. for pushes
+     * of a registry with many idle series. Every export tracks changes on its own.
+     * @param fullRefreshInterval interval between exports of all metrics
+     * @see DeltaExport
+     */
+    public DeltaExport createDeltaExport(Duration fullRefreshInterval) {
+        return new DeltaExport(this, fullRefreshInterval);
+    }
+
+    /**
+     * Serialize metric values in parallel on the common fork-join pool.
+     * @param out destination, which is not closed
+     * @see #writeParallel(OutputStream, Executor)
+     */
+    public void writeParallel(OutputStream out) {
+        writeParallel(out, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), MIN_SHARD_SIZE);
+    }
+
+    /**
+     * Serialize metric values in parallel for very large registries.
+     *
+     * <p>Metrics are split into contiguous shards, which are serialized into separate buffers on {@code executor}.
+     * Buffers are written to {@code out} in the order of shards as soon as they are ready,
+     * so the output has the same order as {@link #write(OutputStream)}.
+     * Small registries are serialized on the calling thread.</p>
+     *
+     * @param out      destination, which is not closed
+     * @param executor executor to serialize shards on
+     */
+    public void writeParallel(OutputStream out, Executor executor) {
+        writeParallel(out, executor, Runtime.getRuntime().availableProcessors(), MIN_SHARD_SIZE);
+    }
+
+    void writeParallel(OutputStream out, Executor executor, int parallelism, int minShardSize) {
+        List<Metric> metrics = Arrays.asList(collection.values().toArray(new Metric[0]));
+        int shards = Math.min(parallelism * 4, metrics.size() / minShardSize);
+        if (shards <= 1) {
+            serializationStrategy.serialize(metrics, out);
+            return;
+        }
+
+        ByteArrayOutputStream[] buffers = idleShardBuffers.getAndSet(null);
+        if (buffers == null || buffers.length < shards) {
+            buffers = new ByteArrayOutputStream[shards];
+        }
+        for (int i = 0; i < shards; i++) {
+            if (buffers[i] == null) {
+                buffers[i] = new ByteArrayOutputStream();
+            }
+        }
+
+        SerializationStrategy strategy = serializationStrategy;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[shards];
+        for (int i = 0; i < shards; i++) {
+            List<Metric> shard = metrics.subList(metrics.size() * i / shards, metrics.size() * (i + 1) / shards);
+            ByteArrayOutputStream buffer = buffers[i];
+            futures[i] = CompletableFuture.runAsync(() -> strategy.serialize(shard, buffer), executor);
+        }
+
+        try {
+            for (int i = 0; i < shards; i++) {
+                futures[i].join();
+                buffers[i].writeTo(out);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new MetricSerializationException("Unable to write metrics", e);
+        }
+
+        // buffers of a failed write may still be in use by running shards and are not reused
+        for (int i = 0; i < shards; i++) {
+            if (buffers[i].size() > MAX_IDLE_SHARD_BUFFER_SIZE) {
+                buffers[i] = null;
+            } else {
+                buffers[i].reset();
+            }
+        }
+        idleShardBuffers.set(buffers);
+    }
+
+    /**
+     * Rotate time windows of summaries from a shared background thread.
+     * Must be called before any summary is registered.
+     *
+     * <p>By default, a summary checks the system time on every update and query to rotate its windows.
+     * With scheduled rotation, summaries with the same window period follow a shared clock,
+     * and expired windows are cleared in place on the next access.</p>
+     *
+     * @throws IllegalStateException if the registry already has summaries
+     */
+    public void enableScheduledRotation() {
+        for (Metric metric : collection.values()) {
+            if (metric instanceof Summary) {
+                throw new IllegalStateException("Scheduled rotation must be enabled before summaries are registered");
+            }
+        }
+        this.rotationScheduler = RotationScheduler.shared();
+    }
+
+    ByteArrayOutputStream[] getIdleShardBuffers() {
+        return idleShardBuffers.get();
+    }
+
+    Collection<Metric> getMetrics() {
+        return collection.values();
+    }
+
+    SerializationStrategy getSerializationStrategy() {
+        return serializationStrategy;
+    }
+
     /**
      * Set strategy which applies when serialize a metric.
      * @param strategy  Implementation of serialization strategy
@@ -176,67 +573,165 @@ public final class MetricRegistry {
             return this;
         }
 
-        protected String getMetricName() {
-            return name + buildLabels();
+        protected MetricName getMetricName() {
+            String[] labelNames = labels.keySet().toArray(new String[0]);
+            String[] labelValues = labels.values().toArray(new String[0]);
+            return MetricName.of(name, labelNames, labelValues);
         }
+    }
 
-        private String buildLabels() {
-            if (labels.isEmpty()) {
-                return "";
-            }
+    public class CounterBuilder extends AbstractMetricBuilder<Counter> {
 
-            int size = labels.size();
+        private MappedMetricStore store;
 
-            StringBuilder sb = new StringBuilder("{");
+        /**
+         * Keep the value in a memory-mapped file, so it survives restarts.
+         */
+        public CounterBuilder withStore(MappedMetricStore store) {
+            this.store = Objects.requireNonNull(store);
+            return this;
+        }
+
+        @Override
+        public Counter register() {
+            return (Counter) getOrRegister(getMetricName(), store == null ? Counter::new : store::counter);
+        }
 
-            final int[] i = {0};
-            labels.forEach((labelName, value) -> {
-                sb.append(labelName)
-                  .append("=")
-                  .append(("\""))
-                  .append(value)
-                  .append(("\""));
+    }
 
-                if (i[0] < size - 1) {
-                    sb.append(", ");
-                }
-                i[0]++;
-            });
+    public class FloatCounterBuilder extends AbstractMetricBuilder<FloatCounter> {
 
-            sb.append("}");
-            return sb.toString();
+        @Override
+        public FloatCounter register() {
+            return (FloatCounter) getOrRegister(getMetricName(), FloatCounter::new);
         }
     }
 
-    public class CounterBuilder extends AbstractMetricBuilder<Counter> {
+    public class SettableGaugeBuilder extends AbstractMetricBuilder<SettableGauge> {
 
         @Override
-        public Counter register() {
-            return (Counter) collection.computeIfAbsent(getMetricName(), Counter::new);
+        public SettableGauge register() {
+            return (SettableGauge) getOrRegister(getMetricName(), SettableGauge::new);
         }
-
     }
 
     public class GaugeBuilder extends AbstractMetricBuilder<Gauge> {
 
-        private Supplier<Double> supplier;
+        private DoubleSupplier supplier;
+        private Duration maxAge;
+        private Executor executor = CachedDoubleSupplier.DEFAULT_EXECUTOR;
 
         public GaugeBuilder withSupplier(Supplier<Double> supplier) {
+            this.supplier = Gauge.unbox(supplier);
+            return this;
+        }
+
+        public GaugeBuilder withSupplier(DoubleSupplier supplier) {
             this.supplier = supplier;
             return this;
         }
 
+        public GaugeBuilder withSupplier(LongSupplier supplier) {
+            this.supplier = Gauge.widen(supplier);
+            return this;
+        }
+
+        /**
+         * Read a cached value, which is refreshed in background on the shared daemon executor.
+         * @param maxAge Age of the value after which it is refreshed
+         */
+        public GaugeBuilder withCachedValue(Duration maxAge) {
+            this.maxAge = Objects.requireNonNull(maxAge);
+            return this;
+        }
+
+        /**
+         * Read a cached value, which is refreshed in background on the given executor.
+         * @param maxAge Age of the value after which it is refreshed
+         * @param executor Executor which calls the supplier
+         */
+        public GaugeBuilder withCachedValue(Duration maxAge, Executor executor) {
+            this.maxAge = Objects.requireNonNull(maxAge);
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
         @Override
         public Gauge register() {
-            return (Gauge) collection.computeIfAbsent(getMetricName(), name -> new Gauge(name, supplier));
+            return (Gauge) getOrRegister(getMetricName(), name -> maxAge == null
+                    ? new Gauge(name, supplier)
+                    : new Gauge(name, supplier, maxAge, executor));
         }
     }
 
     public class HistogramBuilder extends AbstractMetricBuilder<Histogram> {
+
+        private Histogram.Mode mode = Histogram.Mode.DENSE;
+
+        private MappedMetricStore store;
+
+        public HistogramBuilder withMode(Histogram.Mode mode) {
+            this.mode = Objects.requireNonNull(mode);
+            return this;
+        }
+
+        /**
+         * Keep buckets in a memory-mapped file, so they survive restarts. The recording mode doesn't apply.
+         */
+        public HistogramBuilder withStore(MappedMetricStore store) {
+            this.store = Objects.requireNonNull(store);
+            return this;
+        }
+
         @Override
         public Histogram register() {
-            return (Histogram) collection.computeIfAbsent(getMetricName(), Histogram::new);
+            return (Histogram) getOrRegister(getMetricName(),
+                    name -> store == null ? new Histogram(name, mode) : store.histogram(name));
         }
     }
 
+    public class SummaryBuilder extends AbstractMetricBuilder<Summary> {
+
+        private double[] quantiles = Summary.DEFAULT_QUANTILES;
+        private Duration window = Summary.DEFAULT_MAX_AGE;
+        private int windows = Summary.DEFAULT_AGE_BUCKETS;
+        private double relativeAccuracy = Double.NaN;
+        private boolean buffered;
+
+        public SummaryBuilder withQuantiles(double... quantiles) {
+            this.quantiles = Objects.requireNonNull(quantiles);
+            return this;
+        }
+
+        public SummaryBuilder withWindow(Duration window, int windows) {
+            this.window = Objects.requireNonNull(window);
+            this.windows = windows;
+            return this;
+        }
+
+        /**
+         * Estimate quantiles with a bounded-memory sketch instead of keeping every sample.
+         * @param relativeAccuracy Maximum relative error of quantile values, e.g. 0.01 for 1%
+         */
+        public SummaryBuilder withRelativeAccuracy(double relativeAccuracy) {
+            this.relativeAccuracy = relativeAccuracy;
+            return this;
+        }
+
+        /**
+         * Record samples into lock-free per-thread buffers instead of locking the time window on every update.
+         * Buffered samples are moved into the time window when quantiles are requested.
+         */
+        public SummaryBuilder withBufferedRecording() {
+            this.buffered = true;
+            return this;
+        }
+
+        @Override
+        public Summary register() {
+            return (Summary) getOrRegister(getMetricName(),
+                    name -> new Summary(name, quantiles, window, windows, relativeAccuracy, buffered,
+                            rotationScheduler));
+        }
+    }
 }
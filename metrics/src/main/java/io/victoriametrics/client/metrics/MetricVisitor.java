@@ -11,8 +11,24 @@ public interface MetricVisitor {
 
     void visit(Counter counter);
 
+    /**
+     * Visit a counter with fractional values.
+     * Visitors written before the type existed get it as a {@link Gauge} with the same name and current value.
+     */
+    default void visit(FloatCounter counter) {
+        visit(new Gauge(counter.getMetricName(), counter::get));
+    }
+
     void visit(Gauge gauge);
 
+    /**
+     * Visit a gauge which is set explicitly.
+     * Visitors written before the type existed get it as a {@link Gauge} with the same name and current value.
+     */
+    default void visit(SettableGauge gauge) {
+        visit(new Gauge(gauge.getMetricName(), gauge::get));
+    }
+
     void visit(Histogram histogram);
 
     void visit(Summary summary);
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Epoch of the last modification of a metric, compared against a global clock by exports of changed series.
+ *
+ * <p>A metric marks its epoch after applying a change. The mark reads the global epoch and writes it
+ * only on the first modification in an epoch, so tracking doesn't add contention to hot metrics.
+ * An export starts a new epoch and writes metrics modified in or after the epoch which the previous export
+ * started.</p>
+ *
+ * <p>After writing, the mark reads the global epoch again and repeats while it differs from the written one.
+ * An export which starts a new epoch between the read and the write, and misses the metric,
+ * therefore finds it marked with the new epoch on the next export, and marks of concurrent updates
+ * which overwrite each other settle on the latest epoch.</p>
+ */
+final class ModificationEpoch {
+
+    private static final AtomicLong clock = new AtomicLong(1);
+
+    private volatile long epoch = clock.get();
+
+    /**
+     * Start a new epoch.
+     *
+     * @return the new epoch
+     */
+    static long advance() {
+        return clock.incrementAndGet();
+    }
+
+    long get() {
+        return epoch;
+    }
+
+    /**
+     * Record a modification which is already applied.
+     */
+    void mark() {
+        long current = clock.get();
+        while (epoch != current) {
+            epoch = current;
+            current = clock.get();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees.
+ *
+ * <p>Values are counted in logarithmic buckets {@code (γ^(i-1), γ^i]}, where {@code γ = (1 + α) / (1 - α)},
+ * so any quantile is estimated with relative error of at most {@code α}.
+ * The number of buckets per sign is limited by {@code maxBuckets}: when the limit is reached,
+ * the lowest buckets are collapsed, which keeps memory bounded regardless of the number of samples.
+ * See DDSketch (Masson et al., VLDB 2019).</p>
+ *
+ * <p>The sketch is not thread-safe.</p>
+ */
+final class QuantileSketch {
+
+    static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+    private final double minIndexableValue;
+
+    private final Store positive;
+    private final Store negative;
+    private long zeroCount;
+    /**
+     * Infinities are counted apart from buckets, as their indexes don't fit into stores.
+     */
+    private long negativeInfinityCount;
+    private long positiveInfinityCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    QuantileSketch(double relativeAccuracy) {
+        this(relativeAccuracy, DEFAULT_MAX_BUCKETS);
+    }
+
+    QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0.0 and 1.0");
+        }
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("Max buckets must be positive");
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        this.minIndexableValue = Double.MIN_NORMAL * gamma;
+        this.positive = new Store(maxBuckets);
+        this.negative = new Store(maxBuckets);
+    }
+
+    double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    void add(double value) {
+        add(value, 1);
+    }
+
+    void add(double value, long count) {
+        if (Double.isNaN(value) || count <= 0) {
+            return;
+        }
+
+        if (value == Double.POSITIVE_INFINITY) {
+            positiveInfinityCount += count;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            negativeInfinityCount += count;
+        } else if (value >= minIndexableValue) {
+            positive.add(index(value), count);
+        } else if (value <= -minIndexableValue) {
+            negative.add(index(-value), count);
+        } else {
+            zeroCount += count;
+        }
+
+        this.count += count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all values of another sketch with the same relative accuracy.
+     */
+    void merge(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Unable to merge sketches with different relative accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        negativeInfinityCount += other.negativeInfinityCount;
+        positiveInfinityCount += other.positiveInfinityCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Estimate the value at the quantile.
+     *
+     * @param phi quantile between 0.0 and 1.0
+     * @return the estimated value or {@link Double#NaN} if the sketch is empty
+     */
+    double quantile(double phi) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (phi <= 0.0) {
+            return min;
+        }
+        if (phi >= 1.0) {
+            return max;
+        }
+
+        double rank = phi * (count - 1);
+        long seen = negativeInfinityCount;
+        if (seen > rank) {
+            return min;
+        }
+
+        for (int i = negative.maxIndex; i >= negative.minIndex && negative.total > 0; i--) {
+            seen += negative.get(i);
+            if (seen > rank) {
+                return clamp(-value(i));
+            }
+        }
+
+        seen += zeroCount;
+        if (seen > rank) {
+            return clamp(0.0);
+        }
+
+        for (int i = positive.minIndex; i <= positive.maxIndex && positive.total > 0; i++) {
+            seen += positive.get(i);
+            if (seen > rank) {
+                return clamp(value(i));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Estimate values at several quantiles with a single pass over buckets.
+     *
+     * @param phis   quantiles in ascending order
+     * @param values array receiving the estimated values, {@link Double#NaN} if the sketch is empty
+     */
+    void quantiles(double[] phis, double[] values) {
+        int next = 0;
+        if (count == 0) {
+            Arrays.fill(values, 0, phis.length, Double.NaN);
+            return;
+        }
+        while (next < phis.length && phis[next] <= 0.0) {
+            values[next++] = min;
+        }
+
+        long seen = negativeInfinityCount;
+        next = fill(phis, values, next, seen, min);
+
+        for (int i = negative.maxIndex; i >= negative.minIndex && negative.total > 0 && next < phis.length; i--) {
+            seen += negative.get(i);
+            next = fill(phis, values, next, seen, -value(i));
+        }
+
+        seen += zeroCount;
+        next = fill(phis, values, next, seen, 0.0);
+
+        for (int i = positive.minIndex; i <= positive.maxIndex && positive.total > 0 && next < phis.length; i++) {
+            seen += positive.get(i);
+            next = fill(phis, values, next, seen, value(i));
+        }
+
+        while (next < phis.length) {
+            values[next++] = max;
+        }
+    }
+
+    /**
+     * Assign the value to the following quantiles with rank below {@code seen}.
+     *
+     * @return index of the first unassigned quantile
+     */
+    private int fill(double[] phis, double[] values, int next, long seen, double value) {
+        while (next < phis.length && phis[next] < 1.0 && seen > phis[next] * (count - 1)) {
+            values[next++] = clamp(value);
+        }
+        return next;
+    }
+
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        negativeInfinityCount = 0;
+        positiveInfinityCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) * multiplier);
+    }
+
+    /**
+     * A value within relative accuracy from any value of the bucket.
+     */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (1 + gamma);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Bucket counters of a single sign, covering indexes {@code [minIndex, maxIndex]}.
+     */
+    private static final class Store {
+
+        private static final int INITIAL_CAPACITY = 32;
+
+        private static final long[] EMPTY = new long[0];
+
+        private final int maxBuckets;
+
+        private long[] counts = EMPTY;
+        private int offset;
+        private int minIndex;
+        private int maxIndex;
+        private long total;
+
+        private Store(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        long get(int index) {
+            return counts[index - offset];
+        }
+
+        void add(int index, long count) {
+            if (total == 0) {
+                if (counts.length == 0) {
+                    counts = new long[Math.min(INITIAL_CAPACITY, maxBuckets)];
+                }
+                offset = index - counts.length / 2;
+                minIndex = index;
+                maxIndex = index;
+            } else if (index < minIndex || index > maxIndex) {
+                extend(index);
+                index = Math.max(index, minIndex);
+            }
+
+            counts[index - offset] += count;
+            total += count;
+        }
+
+        void merge(Store other) {
+            for (int i = other.minIndex; i <= other.maxIndex && other.total > 0; i++) {
+                long count = other.get(i);
+                if (count > 0) {
+                    add(i, count);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+            total = 0;
+        }
+
+        private void extend(int index) {
+            int newMin = Math.min(index, minIndex);
+            int newMax = Math.max(index, maxIndex);
+            if (newMax - newMin >= maxBuckets) {
+                // collapse the lowest buckets
+                newMin = newMax - maxBuckets + 1;
+            }
+
+            if (newMin < offset || newMax >= offset + counts.length || newMin > minIndex) {
+                relocate(newMin, newMax);
+            } else {
+                minIndex = newMin;
+                maxIndex = newMax;
+            }
+        }
+
+        private void relocate(int newMin, int newMax) {
+            int span = newMax - newMin + 1;
+            int capacity = Math.min(maxBuckets, Math.max(INITIAL_CAPACITY, Integer.highestOneBit(span - 1) << 1));
+            long[] newCounts = new long[capacity];
+            int newOffset = newMin - (capacity - span) / 2;
+
+            for (int i = minIndex; i <= maxIndex; i++) {
+                long count = counts[i - offset];
+                if (count != 0) {
+                    newCounts[Math.max(i, newMin) - newOffset] += count;
+                }
+            }
+
+            counts = newCounts;
+            offset = newOffset;
+            minIndex = newMin;
+            maxIndex = newMax;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse clocks which drive rotation of time-windowed metrics from a single daemon thread.
+ *
+ * <p>Metrics with the same rotation period share one {@link Clock}. A tick only advances the clock epoch,
+ * so its cost doesn't depend on the number of metrics. Each metric compares the epoch with the one it has seen
+ * and resets its expired windows in place on the next access.</p>
+ *
+ * <p>Metrics hold their clock, while the scheduler references clocks weakly. A clock whose metrics
+ * were garbage collected is cancelled on its next tick or on the next request of a clock,
+ * and the thread is stopped when no clocks are left.</p>
+ */
+final class RotationScheduler {
+
+    private static final RotationScheduler SHARED = new RotationScheduler();
+
+    /**
+     * Ticks of live clocks by period, guarded by {@code this}.
+     */
+    private final Map<Long, Tick> ticks = new HashMap<>();
+
+    /**
+     * Ticks whose clocks were garbage collected.
+     */
+    private final ReferenceQueue<Clock> collected = new ReferenceQueue<>();
+
+    /**
+     * Executor which runs ticks, guarded by {@code this}, {@code null} if there are no clocks.
+     */
+    private ScheduledThreadPoolExecutor executor;
+
+    RotationScheduler() {
+    }
+
+    static RotationScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get a clock which ticks every {@code periodNs} nanoseconds.
+     * The clock keeps ticking as long as it's referenced.
+     */
+    synchronized Clock clock(long periodNs) {
+        if (periodNs <= 0) {
+            throw new IllegalArgumentException("Rotation period must be positive");
+        }
+
+        releaseCollected();
+        Tick tick = ticks.get(periodNs);
+        Clock clock = tick != null ? tick.get() : null;
+        if (clock != null) {
+            return clock;
+        }
+        if (tick != null) {
+            release(tick);
+        }
+
+        clock = new Clock();
+        tick = new Tick(periodNs, clock);
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "vm-metrics-rotation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+        tick.future = executor.scheduleAtFixedRate(tick, periodNs, periodNs, TimeUnit.NANOSECONDS);
+        ticks.put(periodNs, tick);
+        return clock;
+    }
+
+    /**
+     * Whether a clock with the given period is still scheduled.
+     */
+    synchronized boolean isScheduled(long periodNs) {
+        return ticks.containsKey(periodNs);
+    }
+
+    /**
+     * Whether the thread which runs ticks is started.
+     */
+    synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Tick of the clock with the given period, {@code null} if it's not scheduled.
+     */
+    synchronized Tick getTick(long periodNs) {
+        return ticks.get(periodNs);
+    }
+
+    /**
+     * Cancel ticks of clocks which were garbage collected.
+     */
+    synchronized void releaseCollected() {
+        Reference<? extends Clock> reference;
+        while ((reference = collected.poll()) != null) {
+            release((Tick) reference);
+        }
+    }
+
+    private synchronized void release(Tick tick) {
+        tick.future.cancel(false);
+        if (ticks.get(tick.periodNs) == tick) {
+            ticks.remove(tick.periodNs);
+        }
+        if (ticks.isEmpty() && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    final class Tick extends WeakReference<Clock> implements Runnable {
+
+        private final long periodNs;
+        private ScheduledFuture<?> future;
+
+        private Tick(long periodNs, Clock clock) {
+            super(clock, collected);
+            this.periodNs = periodNs;
+        }
+
+        @Override
+        public void run() {
+            Clock current = get();
+            if (current != null) {
+                current.tick();
+            } else {
+                release(this);
+            }
+        }
+    }
+
+    static final class Clock {
+
+        private volatile long epoch;
+
+        /**
+         * Number of ticks since the clock was created.
+         */
+        long epoch() {
+            return epoch;
+        }
+
+        /**
+         * Advance the clock. Called by the scheduler thread only.
+         */
+        void tick() {
+            epoch = epoch + 1;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free buffer of samples striped by thread.
+ *
+ * <p>Writers claim a cell in the chunk of their stripe with a single atomic increment and never wait for readers.
+ * A full chunk is replaced with a new one and queued for draining.
+ * {@link #drain(Sink)} detaches chunks from stripes and waits only for writes already in progress.</p>
+ */
+final class SampleBuffer {
+
+    static final int CHUNK_SIZE = 256;
+
+    /**
+     * Number of queued full chunks when a writer is asked to drain the buffer.
+     */
+    static final int DRAIN_THRESHOLD = 16;
+
+    private final AtomicReferenceArray<Chunk> stripes = new AtomicReferenceArray<>(ThreadStripes.COUNT);
+    private final Queue<Chunk> fullChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger fullChunksCount = new AtomicInteger();
+
+    /**
+     * Add a sample.
+     *
+     * @return true if enough samples are queued and the buffer should be drained
+     */
+    boolean add(double value) {
+        int index = ThreadStripes.current();
+        boolean drain = false;
+        while (true) {
+            Chunk chunk = stripes.get(index);
+            if (chunk == null) {
+                stripes.compareAndSet(index, null, new Chunk());
+                continue;
+            }
+
+            if (chunk.add(value)) {
+                return drain;
+            }
+
+            // The chunk is full or detached by a reader
+            if (stripes.compareAndSet(index, chunk, new Chunk())) {
+                fullChunks.add(chunk);
+                drain = fullChunksCount.incrementAndGet() >= DRAIN_THRESHOLD;
+            }
+        }
+    }
+
+    /**
+     * Pass all buffered samples to the sink. Must not be called concurrently.
+     */
+    void drain(Sink sink) {
+        Chunk chunk;
+        while ((chunk = fullChunks.poll()) != null) {
+            fullChunksCount.decrementAndGet();
+            chunk.drain(sink);
+        }
+
+        for (int i = 0; i < stripes.length(); i++) {
+            chunk = stripes.get(i);
+            if (chunk == null || chunk.isEmpty()) {
+                continue;
+            }
+
+            if (stripes.compareAndSet(i, chunk, new Chunk())) {
+                chunk.drain(sink);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void accept(double[] values, int off, int len);
+    }
+
+    private static final class Chunk {
+
+        private static final int CLOSED = Integer.MAX_VALUE / 2;
+
+        private final double[] values = new double[CHUNK_SIZE];
+
+        /**
+         * Number of claimed cells, may exceed the chunk size.
+         */
+        private final AtomicInteger claimed = new AtomicInteger();
+
+        /**
+         * Number of cells with written samples.
+         */
+        private final AtomicInteger written = new AtomicInteger();
+
+        boolean add(double value) {
+            int index = claimed.getAndIncrement();
+            if (index >= CHUNK_SIZE) {
+                return false;
+            }
+
+            values[index] = value;
+            written.incrementAndGet();
+            return true;
+        }
+
+        boolean isEmpty() {
+            return claimed.get() == 0;
+        }
+
+        void drain(Sink sink) {
+            int size = Math.min(claimed.getAndSet(CLOSED), CHUNK_SIZE);
+            for (int spins = 0; written.get() < size; spins++) {
+                // a writer has claimed a cell but hasn't written it yet
+                if (spins < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            sink.accept(values, 0, size);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauge metric which holds a double value set by the application.
+ *
+ * E.g. the metric allows to track a queue size or the last observed temperature.
+ */
+public class SettableGauge implements Metric {
+
+    /**
+     * Bits of the double value.
+     */
+    private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final MetricName name;
+
+    /**
+     * Epoch of the last modification, see {@link ModificationEpoch}.
+     */
+    private final ModificationEpoch modificationEpoch = new ModificationEpoch();
+
+    public SettableGauge(String name) {
+        this(MetricName.parse(name));
+    }
+
+    public SettableGauge(MetricName name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    @Override
+    public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
+        return name;
+    }
+
+    @Override
+    public void accept(MetricVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public long getModificationEpoch() {
+        return modificationEpoch.get();
+    }
+
+    /**
+     * Set gauge to {@code value}
+     */
+    public void set(double value) {
+        bits.set(Double.doubleToRawLongBits(value));
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Increase gauge by {@code value}
+     * @param value The value to add, may be negative
+     */
+    public void add(double value) {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + value);
+        } while (!bits.compareAndSet(current, next));
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Set gauge to {@code value} if it is greater than the current value.
+     */
+    public void setMax(double value) {
+        long current;
+        do {
+            current = bits.get();
+            if (!(value > Double.longBitsToDouble(current))) {
+                return;
+            }
+        } while (!bits.compareAndSet(current, Double.doubleToRawLongBits(value)));
+        modificationEpoch.mark();
+    }
+
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+}
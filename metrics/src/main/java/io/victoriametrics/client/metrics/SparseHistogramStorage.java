@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.victoriametrics.client.metrics.HistogramBuckets.*;
+
+/**
+ * Bucket storage which allocates buckets of a decade only when a value from that decade is observed.
+ *
+ * <p>Real-world values usually touch a few decades, so the storage takes a fraction of the dense array.</p>
+ */
+final class SparseHistogramStorage extends HistogramStorage {
+
+    private final long[][] decades = new long[DECIMAL_BUCKETS_COUNT][];
+    private long lower;
+    private long upper;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    private final ReentrantLock mutex = new ReentrantLock();
+
+    @Override
+    void add(int slot, double value) {
+        try {
+            mutex.lock();
+
+            sum.add(value);
+            increment(slot, 1);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    void add(int slot, long count, double sum) {
+        try {
+            mutex.lock();
+
+            this.sum.add(sum);
+            increment(slot, count);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    void add(double[] values, int off, int len) {
+        try {
+            mutex.lock();
+
+            double total = 0;
+            for (int i = off; i < off + len; i++) {
+                final double value = values[i];
+                if (value < 0) {
+                    continue;
+                }
+                increment(HistogramBuckets.slotOf(value), 1);
+                total += value;
+            }
+            sum.add(total);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    double collect(long[] counts, boolean reset) {
+        try {
+            mutex.lock();
+
+            counts[LOWER_SLOT] += lower;
+            counts[UPPER_SLOT] += upper;
+            for (int decade = 0; decade < decades.length; decade++) {
+                long[] buckets = decades[decade];
+                if (buckets == null) {
+                    continue;
+                }
+
+                int first = decade * BUCKETS_PER_DECIMAL + 1;
+                for (int i = 0; i < BUCKETS_PER_DECIMAL; i++) {
+                    counts[first + i] += buckets[i];
+                }
+            }
+
+            if (reset) {
+                clear();
+                return sum.sumThenReset();
+            }
+            return sum.sum();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    double sum() {
+        return sum.sum();
+    }
+
+    @Override
+    void reset() {
+        try {
+            mutex.lock();
+
+            clear();
+            sum.reset();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void increment(int slot, long count) {
+        if (slot == LOWER_SLOT) {
+            lower += count;
+            return;
+        }
+        if (slot == UPPER_SLOT) {
+            upper += count;
+            return;
+        }
+
+        int index = slot - 1;
+        int decade = index / BUCKETS_PER_DECIMAL;
+        long[] buckets = decades[decade];
+        if (buckets == null) {
+            buckets = new long[BUCKETS_PER_DECIMAL];
+            decades[decade] = buckets;
+        }
+        buckets[index - decade * BUCKETS_PER_DECIMAL] += count;
+    }
+
+    /**
+     * Zero counters, keeping allocated decades for reuse.
+     */
+    private void clear() {
+        lower = 0;
+        upper = 0;
+        for (long[] buckets : decades) {
+            if (buckets != null) {
+                Arrays.fill(buckets, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Lock-free bucket storage with per-thread stripes.
+ *
+ * <p>Each stripe is a full set of slots, allocated on the first write of a thread mapped onto it.
+ * Stripes are merged when collected, so readers observe a sum of counters rather than a point-in-time copy.</p>
+ */
+final class StripedHistogramStorage extends HistogramStorage {
+
+    private final int slotsCount;
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(ThreadStripes.COUNT);
+    private final DoubleAdder sum = new DoubleAdder();
+
+    StripedHistogramStorage(int slotsCount) {
+        this.slotsCount = slotsCount;
+    }
+
+    @Override
+    void add(int slot, double value) {
+        stripe().incrementAndGet(slot);
+        sum.add(value);
+    }
+
+    @Override
+    void add(int slot, long count, double sum) {
+        stripe().addAndGet(slot, count);
+        this.sum.add(sum);
+    }
+
+    @Override
+    void add(double[] values, int off, int len) {
+        AtomicLongArray stripe = stripe();
+        double total = 0;
+        for (int i = off; i < off + len; i++) {
+            final double value = values[i];
+            if (value < 0) {
+                continue;
+            }
+            stripe.incrementAndGet(HistogramBuckets.slotOf(value));
+            total += value;
+        }
+        sum.add(total);
+    }
+
+    @Override
+    double collect(long[] counts, boolean reset) {
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+
+            for (int slot = 0; slot < slotsCount; slot++) {
+                counts[slot] += reset ? stripe.getAndSet(slot, 0) : stripe.get(slot);
+            }
+        }
+        return reset ? sum.sumThenReset() : sum.sum();
+    }
+
+    @Override
+    double sum() {
+        return sum.sum();
+    }
+
+    @Override
+    void reset() {
+        for (int i = 0; i < stripes.length(); i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int slot = 0; slot < slotsCount; slot++) {
+                    stripe.set(slot, 0);
+                }
+            }
+        }
+        sum.reset();
+    }
+
+    private AtomicLongArray stripe() {
+        int index = ThreadStripes.current();
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripe = new AtomicLongArray(slotsCount);
+            if (!stripes.compareAndSet(index, null, stripe)) {
+                stripe = stripes.get(index);
+            }
+        }
+        return stripe;
+    }
+}
@@ -8,9 +8,22 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Summary metric is used to compute metric quantiles.
+ *
+ * <p>By default, quantiles are exact: every sample of the current time window is kept.
+ * A summary created with a relative accuracy keeps samples in a bounded-memory sketch instead,
+ * so its memory doesn't depend on the rate of updates.</p>
+ *
+ * <p>A buffered summary records samples into lock-free per-thread buffers, which are moved into
+ * the time window when quantiles are requested, so updates never wait for a quantile computation.</p>
+ *
+ * <p>Time windows rotate on access by default. Summaries of a registry with
+ * {@link MetricRegistry#enableScheduledRotation() scheduled rotation} follow a shared clock instead,
+ * so updates read a single volatile field rather than the system time.</p>
  * @author Valery Kantor
  */
 public class Summary implements Metric {
@@ -21,7 +34,12 @@ public class Summary implements Metric {
 
     public final static int DEFAULT_AGE_BUCKETS = 2;
 
-    private final String name;
+    private final MetricName name;
+
+    /**
+     * Epoch of the last modification, see {@link ModificationEpoch}.
+     */
+    private final ModificationEpoch modificationEpoch = new ModificationEpoch();
 
     private final double[] quantiles;
 
@@ -36,10 +54,42 @@ public class Summary implements Metric {
     }
 
     public Summary(String name, double[] quantiles, Duration window, int windows) {
-        this.name = name;
+        this(MetricName.parse(name), quantiles, window, windows);
+    }
+
+    public Summary(MetricName name, double[] quantiles, Duration window, int windows) {
+        this(name, quantiles, window, windows, SampleWindow::new, false, null);
+    }
+
+    /**
+     * Create a summary which estimates quantiles with a bounded-memory sketch
+     * instead of keeping every sample of a time window.
+     *
+     * @param relativeAccuracy Maximum relative error of quantile values, between 0.0 and 1.0 exclusive
+     */
+    public Summary(String name, double[] quantiles, Duration window, int windows, double relativeAccuracy) {
+        this(MetricName.parse(name), quantiles, window, windows, sketchWindows(relativeAccuracy), false, null);
+    }
+
+    /**
+     * @param relativeAccuracy Maximum relative error of quantile values or {@link Double#NaN} for exact quantiles
+     * @param buffered         Record samples into lock-free per-thread buffers, which are moved into
+     *                         the time window when quantiles are requested
+     * @param scheduler        Scheduler which drives window rotation or {@code null} to check the time on every access
+     */
+    Summary(MetricName name, double[] quantiles, Duration window, int windows, double relativeAccuracy,
+            boolean buffered, RotationScheduler scheduler) {
+        this(name, quantiles, window, windows,
+                Double.isNaN(relativeAccuracy) ? SampleWindow::new : sketchWindows(relativeAccuracy), buffered,
+                scheduler);
+    }
+
+    private Summary(MetricName name, double[] quantiles, Duration window, int windows,
+                    Supplier<TimeWindow> windowFactory, boolean buffered, RotationScheduler scheduler) {
+        this.name = Objects.requireNonNull(name);
         validateQuantiles(quantiles);
-        this.quantiles = quantiles;
-        this.timeWindowQuantile = new TimeWindowQuantile(window, windows);
+        this.quantiles = Arrays.stream(quantiles).sorted().distinct().toArray();
+        this.timeWindowQuantile = new TimeWindowQuantile(window, windows, windowFactory, buffered, scheduler);
     }
 
     private void validateQuantiles(double[] quantiles) {
@@ -49,10 +99,62 @@ public class Summary implements Metric {
         }
     }
 
+    private static Supplier<TimeWindow> sketchWindows(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0.0 and 1.0");
+        }
+        return () -> new SketchWindow(relativeAccuracy);
+    }
+
     public void update(double value) {
         sum.add(value);
         count.increment();
         timeWindowQuantile.insert(value);
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Update a summary with the same value observed {@code count} times.
+     *
+     * @param value input value
+     * @param count number of observations
+     */
+    public void update(double value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must be non-negative");
+        }
+        if (count == 0) {
+            return;
+        }
+
+        sum.add(value * count);
+        this.count.add(count);
+        timeWindowQuantile.insert(value, count);
+        modificationEpoch.mark();
+    }
+
+    /**
+     * Update a summary with a batch of values at once.
+     *
+     * @param values input values
+     * @param off    offset of the first value in {@code values}
+     * @param len    number of values to record
+     */
+    public void update(double[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        if (len == 0) {
+            return;
+        }
+
+        double total = 0;
+        for (int i = off; i < off + len; i++) {
+            total += values[i];
+        }
+
+        sum.add(total);
+        count.add(len);
+        timeWindowQuantile.insert(values, off, len);
+        modificationEpoch.mark();
     }
 
     public double getSum() {
@@ -75,16 +177,32 @@ public class Summary implements Metric {
      * Get estimated values by configured quantiles.
      */
     public SortedMap<Double, Double> getQuantileValues() {
+        double[] values = timeWindowQuantile.get(quantiles);
+
         SortedMap<Double, Double> result = new TreeMap<>();
-        for (double quantile : quantiles) {
-            result.put(quantile, timeWindowQuantile.get(quantile));
+        for (int i = 0; i < quantiles.length; i++) {
+            result.put(quantiles[i], values[i]);
         }
 
         return result;
     }
 
+    /**
+     * Take an immutable copy of the summary state: count, sum and values of configured quantiles.
+     *
+     * @return {@link Snapshot}
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getCount(), getSum(), quantiles, timeWindowQuantile.get(quantiles));
+    }
+
     @Override
     public String getName() {
+        return name.toString();
+    }
+
+    @Override
+    public MetricName getMetricName() {
         return name;
     }
 
@@ -93,6 +211,52 @@ public class Summary implements Metric {
         visitor.visit(this);
     }
 
+    @Override
+    public long getModificationEpoch() {
+        return modificationEpoch.get();
+    }
+
+    /**
+     * Immutable state of a summary.
+     */
+    public static final class Snapshot {
+
+        private final long count;
+        private final double sum;
+        private final double[] quantiles;
+        private final double[] values;
+
+        private Snapshot(long count, double sum, double[] quantiles, double[] values) {
+            this.count = count;
+            this.sum = sum;
+            this.quantiles = quantiles;
+            this.values = values;
+        }
+
+        /**
+         * Visit configured quantiles in ascending order.
+         * @param visitor Visitor callback
+         */
+        public void visit(Visitor visitor) {
+            for (int i = 0; i < quantiles.length; i++) {
+                visitor.value(quantiles[i], values[i]);
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void value(double quantile, double value);
+    }
+
     static class TimeWindowQuantile {
         final TimeWindow[] timeWindow;
 
@@ -105,69 +269,428 @@ public class Summary implements Metric {
 
         int currentWindow = 0;
 
-        private TimeWindowQuantile(Duration window, int timeWindows) {
+        /**
+         * Clock which drives rotation, {@code null} if the time is checked on every access.
+         */
+        final RotationScheduler.Clock clock;
+
+        /**
+         * The clock epoch of the last rotation
+         */
+        private long lastEpoch;
+
+        /**
+         * Samples recorded without locking, {@code null} if samples are inserted into windows directly.
+         */
+        private final SampleBuffer buffer;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Quantiles of the last {@link #get(double[])} call and their values.
+         * Values stay valid until the current window receives samples or rotates.
+         */
+        private double[] cachedPhis;
+        private double[] cachedValues;
+        private boolean modified;
+
+        private TimeWindowQuantile(Duration window, int timeWindows, Supplier<TimeWindow> windowFactory,
+                                   boolean buffered, RotationScheduler scheduler) {
             this.timeWindow = new TimeWindow[timeWindows];
             for (int i = 0; i < timeWindows; i++) {
-                timeWindow[i] = new TimeWindow();
+                timeWindow[i] = windowFactory.get();
             }
 
             rotateEachNs = window.toNanos() / timeWindows;
             lastRotationNs = System.nanoTime();
+            this.buffer = buffered ? new SampleBuffer() : null;
+            this.clock = scheduler != null ? scheduler.clock(rotateEachNs) : null;
+            this.lastEpoch = clock != null ? clock.epoch() : 0;
         }
 
-        public synchronized void insert(double value) {
-            rotate();
-            timeWindow[currentWindow].insert(value);
+        public void insert(double value) {
+            if (buffer != null) {
+                if (buffer.add(value)) {
+                    tryDrain();
+                }
+                return;
+            }
+
+            try {
+                lock.lock();
+                rotate().insert(value);
+                modified = true;
+            } finally {
+                lock.unlock();
+            }
         }
 
-        public synchronized double get(double phi) {
-            TimeWindow window = rotate();
-            return window.get(phi);
+        public void insert(double value, long count) {
+            try {
+                lock.lock();
+                rotate().insert(value, count);
+                modified = true;
+            } finally {
+                lock.unlock();
+            }
         }
 
-        TimeWindow rotate() {
-            long elapsedFromLastRotationNs = System.nanoTime() - lastRotationNs;
+        public void insert(double[] values, int off, int len) {
+            if (buffer != null) {
+                boolean drain = false;
+                for (int i = off; i < off + len; i++) {
+                    drain |= buffer.add(values[i]);
+                }
+                if (drain) {
+                    tryDrain();
+                }
+                return;
+            }
+
+            try {
+                lock.lock();
+                rotate().insert(values, off, len);
+                modified = true;
+            } finally {
+                lock.unlock();
+            }
+        }
 
-            while(elapsedFromLastRotationNs > rotateEachNs) {
-                timeWindow[currentWindow] = new TimeWindow();
-                if (++currentWindow >= timeWindow.length) {
-                    currentWindow = 0;
+        public double get(double phi) {
+            try {
+                lock.lock();
+                TimeWindow window = rotate();
+                drain(window);
+                return window.get(phi);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Get values at several quantiles at once.
+         * Values are cached, so repeated calls with the same array cost nothing until the window changes.
+         *
+         * @param phis quantiles in ascending order
+         * @return values at the quantiles, the array must not be modified
+         */
+        double[] get(double[] phis) {
+            try {
+                lock.lock();
+                TimeWindow window = rotate();
+                drain(window);
+
+                if (modified || phis != cachedPhis) {
+                    double[] values = new double[phis.length];
+                    window.get(phis, values);
+                    cachedPhis = phis;
+                    cachedValues = values;
+                    modified = false;
                 }
+                return cachedValues;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        TimeWindow rotate() {
+            if (clock != null) {
+                long epoch = clock.epoch();
+                if (epoch != lastEpoch) {
+                    advance(epoch - lastEpoch);
+                    lastEpoch = epoch;
+                }
+                return timeWindow[currentWindow];
+            }
 
-                elapsedFromLastRotationNs -= rotateEachNs;
-                lastRotationNs += rotateEachNs;
+            long elapsedFromLastRotationNs = System.nanoTime() - lastRotationNs;
+            if (elapsedFromLastRotationNs > rotateEachNs) {
+                long rotations = (elapsedFromLastRotationNs - 1) / rotateEachNs;
+                advance(rotations);
+                lastRotationNs += rotations * rotateEachNs;
             }
 
             return timeWindow[currentWindow];
         }
+
+        /**
+         * Clear the current window and move to the next one {@code rotations} times.
+         * Windows are cleared in place, so their storage is reused.
+         * Buffered samples were recorded before the rotation, so they are moved into the expiring window first.
+         */
+        private void advance(long rotations) {
+            drain(timeWindow[currentWindow]);
+            int windows = timeWindow.length;
+            for (long i = 0; i < Math.min(rotations, windows); i++) {
+                timeWindow[(int) ((currentWindow + i) % windows)].clear();
+            }
+            currentWindow = (int) ((currentWindow + rotations) % windows);
+            modified = true;
+        }
+
+        /**
+         * Move buffered samples into the window if nobody else holds the lock.
+         * Writers call it when the buffer grows, so they never wait for a quantile computation.
+         */
+        private void tryDrain() {
+            if (!lock.tryLock()) {
+                return;
+            }
+
+            try {
+                drain(rotate());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void drain(TimeWindow window) {
+            if (buffer != null) {
+                buffer.drain((values, off, len) -> {
+                    window.insert(values, off, len);
+                    modified = true;
+                });
+            }
+        }
     }
 
-    private static class TimeWindow {
+    private abstract static class TimeWindow {
 
-        private final List<Double> samples = new ArrayList<>();
+        abstract void insert(double value);
 
+        abstract void insert(double value, long count);
+
+        void insert(double[] values, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                insert(values[i]);
+            }
+        }
+
+        abstract double get(double phi);
+
+        /**
+         * Remove all samples, keeping allocated storage for reuse.
+         */
+        abstract void clear();
+
+        /**
+         * @param phis   quantiles in ascending order
+         * @param values array receiving values at the quantiles
+         */
+        void get(double[] phis, double[] values) {
+            for (int i = 0; i < phis.length; i++) {
+                values[i] = get(phis[i]);
+            }
+        }
+    }
+
+    /**
+     * Window which keeps every sample and computes exact quantiles.
+     *
+     * <p>Samples are sorted in place on the first request and stay sorted until new samples arrive,
+     * so any number of quantiles costs a single sort.</p>
+     *
+     * <p>Weighted samples are kept as distinct values with their counts, sorted by value, so a single
+     * update with a large count costs as much as any other update. Quantiles of a window with weighted
+     * samples are found by one walk over both sorted arrays.</p>
+     */
+    private static class SampleWindow extends TimeWindow {
+
+        private static final double[] EMPTY = new double[0];
+        private static final long[] NO_WEIGHTS = new long[0];
+        private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+        private double[] samples = EMPTY;
+        private int size;
+        private boolean sorted = true;
+
+        private double[] weightedValues = EMPTY;
+        private long[] weights = NO_WEIGHTS;
+        private int weightedSize;
+        private long weightedCount;
+
+        @Override
         public void insert(double value) {
-           samples.add(value);
+            if (size == samples.length) {
+                grow(1);
+            }
+            samples[size++] = value;
+            sorted = false;
+        }
+
+        @Override
+        public void insert(double value, long count) {
+            if (count == 1) {
+                insert(value);
+                return;
+            }
+
+            int index = Arrays.binarySearch(weightedValues, 0, weightedSize, value);
+            if (index < 0) {
+                index = -index - 1;
+                if (weightedSize == weightedValues.length) {
+                    int capacity = Math.max(8, weightedSize + (weightedSize >> 1));
+                    weightedValues = Arrays.copyOf(weightedValues, capacity);
+                    weights = Arrays.copyOf(weights, capacity);
+                }
+                System.arraycopy(weightedValues, index, weightedValues, index + 1, weightedSize - index);
+                System.arraycopy(weights, index, weights, index + 1, weightedSize - index);
+                weightedValues[index] = value;
+                weights[index] = 0;
+                weightedSize++;
+            }
+            weights[index] += count;
+            weightedCount += count;
+        }
+
+        @Override
+        public void insert(double[] values, int off, int len) {
+            if (len > samples.length - size) {
+                grow(len);
+            }
+            System.arraycopy(values, off, samples, size, len);
+            size += len;
+            sorted = false;
+        }
+
+        private void grow(int extra) {
+            if (extra > MAX_SIZE - size) {
+                throw new IllegalStateException("Summary window can't hold more than " + MAX_SIZE + " samples");
+            }
+            int capacity = (int) Math.min(MAX_SIZE, Math.max(size + extra, Math.max(16, 2L * size)));
+            samples = Arrays.copyOf(samples, capacity);
         }
 
+        @Override
         public double get(double phi) {
-            if (samples.isEmpty()) {
+            long total = size + weightedCount;
+            if (total == 0) {
                 return Double.NaN;
             }
 
-            List<Double> temp = new ArrayList<>(samples);
-            temp.sort(Comparator.naturalOrder());
+            sort();
+            long rank = rank(phi, total);
+            if (weightedSize == 0) {
+                return samples[(int) rank];
+            }
+
+            double[] values = new double[1];
+            walk(new long[]{rank}, values);
+            return values[0];
+        }
+
+        @Override
+        void get(double[] phis, double[] values) {
+            long total = size + weightedCount;
+            if (total == 0 || weightedSize == 0) {
+                super.get(phis, values);
+                return;
+            }
+
+            sort();
+            long[] ranks = new long[phis.length];
+            for (int i = 0; i < phis.length; i++) {
+                ranks[i] = rank(phis[i], total);
+            }
+            walk(ranks, values);
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Arrays.sort(samples, 0, size);
+                sorted = true;
+            }
+        }
 
+        /**
+         * Index of the sample at a quantile among all samples in ascending order.
+         */
+        private static long rank(double phi, long total) {
             if (phi <= 0.0) {
-                return temp.get(0);
+                return 0;
             }
 
             if (phi >= 1.0) {
-                return temp.get(temp.size() - 1);
+                return total - 1;
             }
 
-            int rank = (int) Math.ceil(phi * temp.size());
-            return temp.get(rank);
+            return Math.min((long) Math.ceil(phi * total), total - 1);
+        }
+
+        /**
+         * Merge plain and weighted samples in ascending order and pick values at the given ranks.
+         *
+         * @param ranks  ranks in ascending order
+         * @param values array receiving values at the ranks
+         */
+        private void walk(long[] ranks, double[] values) {
+            int i = 0;
+            int j = 0;
+            long seen = 0;
+            for (int r = 0; r < ranks.length; r++) {
+                while (true) {
+                    if (j == weightedSize || (i < size && samples[i] <= weightedValues[j])) {
+                        if (seen == ranks[r]) {
+                            values[r] = samples[i];
+                            break;
+                        }
+                        seen++;
+                        i++;
+                    } else {
+                        if (seen + weights[j] > ranks[r]) {
+                            values[r] = weightedValues[j];
+                            break;
+                        }
+                        seen += weights[j];
+                        j++;
+                    }
+                }
+            }
+        }
+
+        @Override
+        void clear() {
+            size = 0;
+            sorted = true;
+            weightedSize = 0;
+            weightedCount = 0;
+        }
+    }
+
+    /**
+     * Window which keeps samples in a {@link QuantileSketch} of bounded size.
+     */
+    private static class SketchWindow extends TimeWindow {
+
+        private final QuantileSketch sketch;
+
+        private SketchWindow(double relativeAccuracy) {
+            this.sketch = new QuantileSketch(relativeAccuracy);
+        }
+
+        @Override
+        public void insert(double value) {
+            sketch.add(value);
+        }
+
+        @Override
+        public void insert(double value, long count) {
+            sketch.add(value, count);
+        }
+
+        @Override
+        public double get(double phi) {
+            return sketch.quantile(phi);
+        }
+
+        @Override
+        void get(double[] phis, double[] values) {
+            sketch.quantiles(phis, values);
+        }
+
+        @Override
+        void clear() {
+            sketch.clear();
         }
     }
 }
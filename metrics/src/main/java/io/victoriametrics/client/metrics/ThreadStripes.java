@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+/**
+ * Maps threads onto a fixed number of stripes to spread contended writes.
+ */
+final class ThreadStripes {
+
+    private static final int MAX_COUNT = 64;
+
+    /**
+     * Number of stripes, the smallest power of two not less than the number of available processors.
+     */
+    static final int COUNT = stripesCount(Runtime.getRuntime().availableProcessors());
+
+    private static final int MASK = COUNT - 1;
+
+    private ThreadStripes() {
+    }
+
+    /**
+     * Stripe index of the current thread.
+     */
+    @SuppressWarnings("deprecation")
+    static int current() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & MASK;
+    }
+
+    private static int stripesCount(int processors) {
+        if (processors <= 1) {
+            return 1;
+        }
+        return Math.min(MAX_COUNT, Integer.highestOneBit(processors - 1) << 1);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.utils.GzipOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Cache of the rendered exposition of a registry for endpoints scraped by several clients.
+ *
+ * <p>A request is served with the last rendered bytes if rendering started no earlier than the minimum
+ * render interval before the request. Otherwise the registry is rendered again. Renders are serialized,
+ * so requests which arrive while a render is in flight wait for it and share its result instead of rendering
+ * the registry once per request. A gzip-compressed copy is built once per render on the first request
+ * which accepts it.</p>
+ *
+ * <p>Returned arrays are shared between requests and must not be modified.</p>
+ */
+public final class ExpositionCache {
+
+    private final MetricRegistry registry;
+    private final long minIntervalNs;
+    private final int compressionLevel;
+
+    private final Object renderLock = new Object();
+    private volatile Exposition last;
+
+    public ExpositionCache(MetricRegistry registry, Duration minInterval) {
+        this(registry, minInterval, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param minInterval      Minimum interval between renders of the registry
+     * @param compressionLevel Level of gzip compression of {@link #getGzip()}
+     */
+    public ExpositionCache(MetricRegistry registry, Duration minInterval, int compressionLevel) {
+        this.registry = Objects.requireNonNull(registry);
+        this.minIntervalNs = minInterval.toNanos();
+        this.compressionLevel = compressionLevel;
+        if (minIntervalNs < 0) {
+            throw new IllegalArgumentException("Min interval must be non-negative");
+        }
+    }
+
+    /**
+     * Get the exposition as UTF-8 text.
+     */
+    public byte[] get() {
+        return exposition(System.nanoTime()).bytes;
+    }
+
+    /**
+     * Get the gzip-compressed exposition.
+     */
+    public byte[] getGzip() {
+        return exposition(System.nanoTime()).gzip(compressionLevel);
+    }
+
+    private Exposition exposition(long requestNs) {
+        Exposition exposition = last;
+        if (isFresh(exposition, requestNs)) {
+            return exposition;
+        }
+
+        synchronized (renderLock) {
+            exposition = last;
+            if (isFresh(exposition, requestNs)) {
+                return exposition;
+            }
+
+            long startedNs = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(exposition != null ? exposition.bytes.length : 1024);
+            registry.write(out);
+
+            exposition = new Exposition(out.toByteArray(), startedNs);
+            last = exposition;
+            return exposition;
+        }
+    }
+
+    private boolean isFresh(Exposition exposition, long requestNs) {
+        return exposition != null && requestNs - exposition.startedNs <= minIntervalNs;
+    }
+
+    private static final class Exposition {
+        private final byte[] bytes;
+        private final long startedNs;
+        private byte[] gzip;
+
+        private Exposition(byte[] bytes, long startedNs) {
+            this.bytes = bytes;
+            this.startedNs = startedNs;
+        }
+
+        private synchronized byte[] gzip(int compressionLevel) {
+            if (gzip == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+                try (GzipOutputStream gzipOut = GzipOutputStream.open(out, compressionLevel)) {
+                    gzipOut.write(bytes);
+                } catch (IOException e) {
+                    throw new MetricSerializationException("Unable to compress metrics", e);
+                }
+                gzip = out.toByteArray();
+            }
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Writer of the Prometheus text exposition format into an {@link OutputStream}.
+ *
+ * <p>Lines are assembled in a reusable byte buffer from pre-rendered prefixes of series,
+ * and numbers are formatted in place by {@link NumberEncoder}, so writing a counter, a gauge or a histogram
+ * doesn't allocate. The writer is a visitor itself and is reused between metrics and scrapes.
+ * Failures of the stream are thrown from visit methods as {@link UncheckedIOException}.
+ * Instances are not thread-safe.</p>
+ */
+final class ExpositionWriter implements MetricVisitor, Summary.Visitor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * {@code vmrange} label values of histogram slots.
+     */
+    private static final byte[][] RANGES = new byte[Histogram.getSlotsCount()][];
+
+    static {
+        for (int slot = 0; slot < RANGES.length; slot++) {
+            RANGES[slot] = Histogram.getSlotRange(slot).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final Function<MetricName, SeriesPrefixes> prefixes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final long[] counts = new long[Histogram.getSlotsCount()];
+
+    private OutputStream out;
+    private int position;
+    private SeriesPrefixes current;
+
+    ExpositionWriter(Function<MetricName, SeriesPrefixes> prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    void reset(OutputStream out) {
+        this.out = out;
+        this.position = 0;
+    }
+
+    /**
+     * Write buffered bytes to the stream and release it.
+     */
+    void finish() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out = null;
+            current = null;
+        }
+    }
+
+    @Override
+    public void visit(Counter counter) {
+        writeBytes(prefixes.apply(counter.getMetricName()).value());
+        writeLong(counter.get());
+        writeByte('\n');
+    }
+
+    @Override
+    public void visit(FloatCounter counter) {
+        writeValue(counter.getMetricName(), counter.get());
+    }
+
+    @Override
+    public void visit(Gauge gauge) {
+        writeValue(gauge.getMetricName(), gauge.get());
+    }
+
+    @Override
+    public void visit(SettableGauge gauge) {
+        writeValue(gauge.getMetricName(), gauge.get());
+    }
+
+    @Override
+    public void visit(Histogram histogram) {
+        SeriesPrefixes prefixes = this.prefixes.apply(histogram.getMetricName());
+        Arrays.fill(counts, 0);
+        double sum = histogram.collect(counts);
+
+        long total = 0;
+        for (int slot = 0; slot < counts.length; slot++) {
+            long count = counts[slot];
+            if (count > 0) {
+                writeBytes(prefixes.bucket());
+                writeBytes(RANGES[slot]);
+                writeBytes(SeriesPrefixes.BUCKET_SUFFIX);
+                writeDouble(count);
+                writeByte('\n');
+                total += count;
+            }
+        }
+
+        writeSum(prefixes, sum);
+        writeCount(prefixes, total);
+    }
+
+    @Override
+    public void visit(Summary summary) {
+        SeriesPrefixes prefixes = this.prefixes.apply(summary.getMetricName());
+        Summary.Snapshot snapshot = summary.snapshot();
+
+        current = prefixes;
+        snapshot.visit(this);
+        current = null;
+
+        writeSum(prefixes, snapshot.getSum());
+        writeCount(prefixes, snapshot.getCount());
+    }
+
+    /**
+     * Quantile of the summary being written.
+     */
+    @Override
+    public void value(double quantile, double value) {
+        writeBytes(current.quantile(quantile));
+        writeDouble(value);
+        writeByte('\n');
+    }
+
+    private void writeValue(MetricName name, double value) {
+        writeBytes(prefixes.apply(name).value());
+        writeDouble(value);
+        writeByte('\n');
+    }
+
+    private void writeSum(SeriesPrefixes prefixes, double sum) {
+        writeBytes(prefixes.sum());
+        writeDouble(sum);
+        writeByte('\n');
+    }
+
+    private void writeCount(SeriesPrefixes prefixes, long count) {
+        writeBytes(prefixes.count());
+        writeDouble(count);
+        writeByte('\n');
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (bytes.length > buffer.length - position) {
+            flush();
+            if (bytes.length > buffer.length) {
+                try {
+                    out.write(bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = (byte) c;
+    }
+
+    private void writeLong(long value) {
+        ensureNumber();
+        position = NumberEncoder.writeLong(buffer, position, value);
+    }
+
+    private void writeDouble(double value) {
+        ensureNumber();
+        position = NumberEncoder.writeDouble(buffer, position, value);
+    }
+
+    private void ensureNumber() {
+        if (buffer.length - position < NumberEncoder.MAX_LENGTH) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
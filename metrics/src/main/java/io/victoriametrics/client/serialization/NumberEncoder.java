@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free formatting of numbers into ASCII bytes.
+ *
+ * <p>Doubles are formatted into the shortest decimal representation which parses back to the same value,
+ * using the Ryu algorithm (Ulf Adams, PLDI 2018). The layout follows {@link Double#toString(double)}:
+ * plain notation for magnitudes in {@code [1e-3, 1e7)} and scientific notation otherwise,
+ * with at least one digit after the decimal point. Infinities are written as {@code +Inf} and {@code -Inf}
+ * as required by the exposition format.</p>
+ */
+final class NumberEncoder {
+
+    /**
+     * Maximum number of bytes written by {@link #writeLong} and {@link #writeDouble}.
+     */
+    static final int MAX_LENGTH = 25;
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] POSITIVE_INFINITY = {'+', 'I', 'n', 'f'};
+    private static final byte[] NEGATIVE_INFINITY = {'-', 'I', 'n', 'f'};
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private static final int DOUBLE_MANTISSA_BITS = 52;
+    private static final long DOUBLE_MANTISSA_MASK = (1L << DOUBLE_MANTISSA_BITS) - 1;
+    private static final int DOUBLE_EXPONENT_MASK = (1 << 11) - 1;
+    private static final int DOUBLE_EXPONENT_BIAS = (1 << 10) - 1;
+
+    private static final int POS_TABLE_SIZE = 326;
+    private static final int NEG_TABLE_SIZE = 291;
+
+    private static final int POW5_BITCOUNT = 121;
+    private static final int POW5_INV_BITCOUNT = 122;
+    private static final int QUARTER_BITCOUNT = 31;
+
+    /**
+     * Top {@link #POW5_BITCOUNT} bits of {@code 5^i}, split into 31-bit quarters.
+     */
+    private static final int[][] POW5_SPLIT = new int[POS_TABLE_SIZE][4];
+
+    /**
+     * {@code floor(2^(floor(log2(5^i)) + POW5_INV_BITCOUNT) / 5^i) + 1}, split into 31-bit quarters.
+     */
+    private static final int[][] POW5_INV_SPLIT = new int[NEG_TABLE_SIZE][4];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(QUARTER_BITCOUNT).subtract(BigInteger.ONE);
+        for (int i = 0; i < POS_TABLE_SIZE; i++) {
+            BigInteger pow = BigInteger.valueOf(5).pow(i);
+            int pow5len = pow.bitLength();
+
+            for (int j = 0; j < 4; j++) {
+                POW5_SPLIT[i][j] = pow.shiftRight(pow5len - POW5_BITCOUNT + (3 - j) * QUARTER_BITCOUNT)
+                                      .and(mask)
+                                      .intValue();
+            }
+
+            if (i < NEG_TABLE_SIZE) {
+                BigInteger inv = BigInteger.ONE.shiftLeft(pow5len - 1 + POW5_INV_BITCOUNT)
+                                               .divide(pow)
+                                               .add(BigInteger.ONE);
+                for (int j = 0; j < 4; j++) {
+                    BigInteger quarter = inv.shiftRight((3 - j) * QUARTER_BITCOUNT);
+                    POW5_INV_SPLIT[i][j] = (j == 0 ? quarter : quarter.and(mask)).intValue();
+                }
+            }
+        }
+    }
+
+    private NumberEncoder() {
+    }
+
+    /**
+     * Write a long in decimal notation.
+     *
+     * @return position after the last written byte
+     */
+    static int writeLong(byte[] buffer, int position, long value) {
+        if (value == Long.MIN_VALUE) {
+            System.arraycopy(MIN_LONG, 0, buffer, position, MIN_LONG.length);
+            return position + MIN_LONG.length;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+
+        int length = decimalLength(value);
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + length;
+    }
+
+    /**
+     * Format a double as {@link #writeDouble(byte[], int, double)} does, for character output.
+     */
+    static String toString(double value) {
+        byte[] buffer = new byte[MAX_LENGTH];
+        int length = writeDouble(buffer, 0, value);
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Write the shortest decimal representation of a double which parses back to the same value.
+     *
+     * @return position after the last written byte
+     */
+    static int writeDouble(byte[] buffer, int position, double value) {
+        if (Double.isNaN(value)) {
+            return write(buffer, position, NAN);
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return write(buffer, position, POSITIVE_INFINITY);
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return write(buffer, position, NEGATIVE_INFINITY);
+        }
+
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits < 0) {
+            buffer[position++] = '-';
+        }
+        if ((bits & Long.MAX_VALUE) == 0) {
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            buffer[position++] = '0';
+            return position;
+        }
+
+        // Step 1: decode the floating point number, and unify normalized and subnormal cases
+        int ieeeExponent = (int) ((bits >>> DOUBLE_MANTISSA_BITS) & DOUBLE_EXPONENT_MASK);
+        long ieeeMantissa = bits & DOUBLE_MANTISSA_MASK;
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - DOUBLE_EXPONENT_BIAS - DOUBLE_MANTISSA_BITS;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - DOUBLE_EXPONENT_BIAS - DOUBLE_MANTISSA_BITS;
+            m2 = ieeeMantissa | (1L << DOUBLE_MANTISSA_BITS);
+        }
+
+        // Step 2: determine the interval of valid decimal representations
+        boolean even = (m2 & 1) == 0;
+        long mv = 4 * m2;
+        long mp = 4 * m2 + 2;
+        int mmShift = (m2 != (1L << DOUBLE_MANTISSA_BITS) || ieeeExponent <= 1) ? 1 : 0;
+        long mm = 4 * m2 - 1 - mmShift;
+        e2 -= 2;
+
+        // Step 3: convert to a decimal power base
+        long dv;
+        long dp;
+        long dm;
+        int e10;
+        boolean dmIsTrailingZeros = false;
+        boolean dvIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = Math.max(0, ((e2 * 78913) >>> 18) - 1);
+            int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            dv = mulPow5InvDivPow2(mv, q, i);
+            dp = mulPow5InvDivPow2(mp, q, i);
+            dm = mulPow5InvDivPow2(mm, q, i);
+            e10 = q;
+            if (q <= 21) {
+                if (mv % 5 == 0) {
+                    dvIsTrailingZeros = pow5Factor(mv) >= q;
+                } else if (even) {
+                    dmIsTrailingZeros = pow5Factor(mm) >= q;
+                } else if (pow5Factor(mp) >= q) {
+                    dp--;
+                }
+            }
+        } else {
+            int q = Math.max(0, ((-e2 * 732923) >>> 20) - 1);
+            int i = -e2 - q;
+            int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            dv = mulPow5DivPow2(mv, i, j);
+            dp = mulPow5DivPow2(mp, i, j);
+            dm = mulPow5DivPow2(mm, i, j);
+            e10 = q + e2;
+            if (q <= 1) {
+                dvIsTrailingZeros = true;
+                if (even) {
+                    dmIsTrailingZeros = mmShift == 1;
+                } else {
+                    dp--;
+                }
+            } else if (q < 63) {
+                dvIsTrailingZeros = (mv & ((1L << (q - 1)) - 1)) == 0;
+            }
+        }
+
+        // Step 4: find the shortest decimal representation in the interval,
+        // keeping at least two digits in scientific notation
+        int vpLength = decimalLength(dp);
+        int exp = e10 + vpLength - 1;
+        boolean scientific = exp < -3 || exp >= 7;
+
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        long output;
+        if (dmIsTrailingZeros || dvIsTrailingZeros) {
+            while (dp / 10 > dm / 10) {
+                if (dp < 100 && scientific) {
+                    break;
+                }
+                dmIsTrailingZeros &= dm % 10 == 0;
+                dvIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (dv % 10);
+                dp /= 10;
+                dv /= 10;
+                dm /= 10;
+                removed++;
+            }
+            if (dmIsTrailingZeros && even) {
+                while (dm % 10 == 0) {
+                    if (dp < 100 && scientific) {
+                        break;
+                    }
+                    dvIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (dv % 10);
+                    dp /= 10;
+                    dv /= 10;
+                    dm /= 10;
+                    removed++;
+                }
+            }
+            if (dvIsTrailingZeros && lastRemovedDigit == 5 && dv % 2 == 0) {
+                // round half to even
+                lastRemovedDigit = 4;
+            }
+            output = dv + ((dv == dm && !(dmIsTrailingZeros && even)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            while (dp / 10 > dm / 10) {
+                if (dp < 100 && scientific) {
+                    break;
+                }
+                lastRemovedDigit = (int) (dv % 10);
+                dp /= 10;
+                dv /= 10;
+                dm /= 10;
+                removed++;
+            }
+            output = dv + (dv == dm || lastRemovedDigit >= 5 ? 1 : 0);
+        }
+        int length = vpLength - removed;
+
+        // Step 5: print the decimal representation
+        if (scientific) {
+            // d.dddE-xx
+            for (int i = 0; i < length - 1; i++) {
+                buffer[position + length - i] = (byte) ('0' + output % 10);
+                output /= 10;
+            }
+            buffer[position] = (byte) ('0' + output % 10);
+            buffer[position + 1] = '.';
+            position += length + 1;
+            if (length == 1) {
+                buffer[position++] = '0';
+            }
+
+            buffer[position++] = 'E';
+            if (exp < 0) {
+                buffer[position++] = '-';
+                exp = -exp;
+            }
+            if (exp >= 100) {
+                buffer[position++] = (byte) ('0' + exp / 100);
+                exp %= 100;
+                buffer[position++] = (byte) ('0' + exp / 10);
+            } else if (exp >= 10) {
+                buffer[position++] = (byte) ('0' + exp / 10);
+            }
+            buffer[position++] = (byte) ('0' + exp % 10);
+            return position;
+        }
+
+        if (exp < 0) {
+            // 0.00ddd
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            for (int i = -1; i > exp; i--) {
+                buffer[position++] = '0';
+            }
+            for (int i = position + length - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + output % 10);
+                output /= 10;
+            }
+            return position + length;
+        }
+
+        if (exp + 1 >= length) {
+            // ddd00.0
+            for (int i = position + length - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + output % 10);
+                output /= 10;
+            }
+            position += length;
+            for (int i = length; i < exp + 1; i++) {
+                buffer[position++] = '0';
+            }
+            buffer[position++] = '.';
+            buffer[position++] = '0';
+            return position;
+        }
+
+        // dd.ddd
+        int dot = position + exp + 1;
+        for (int i = position + length; i >= position; i--) {
+            if (i == dot) {
+                buffer[i] = '.';
+                continue;
+            }
+            buffer[i] = (byte) ('0' + output % 10);
+            output /= 10;
+        }
+        return position + length + 1;
+    }
+
+    private static int write(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static int decimalLength(long value) {
+        int length = 1;
+        for (long power = 10; length < 19 && value >= power; power *= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * {@code floor(log2(5^e)) + 1} for {@code 0 <= e <= 3528}
+     */
+    private static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    /**
+     * The largest power of 5 which divides the value.
+     */
+    private static int pow5Factor(long value) {
+        int count = 0;
+        while (value > 0 && value % 5 == 0) {
+            value /= 5;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Compute {@code m * 5^i / 2^j} using the top bits of {@code 5^i}.
+     */
+    private static long mulPow5DivPow2(long m, int i, int j) {
+        return mulShift(m, POW5_SPLIT[i], j);
+    }
+
+    /**
+     * Compute {@code m / 5^i / 2^j} using the inverse of {@code 5^i}.
+     */
+    private static long mulPow5InvDivPow2(long m, int i, int j) {
+        return mulShift(m, POW5_INV_SPLIT[i], j);
+    }
+
+    /**
+     * Multiply a value of at most 55 bits by a 124-bit factor in 31-bit quarters and shift right.
+     */
+    private static long mulShift(long m, int[] factor, int j) {
+        long mHigh = m >>> 31;
+        long mLow = m & 0x7fffffff;
+        long bits13 = mHigh * factor[0];
+        long bits03 = mLow * factor[0];
+        long bits12 = mHigh * factor[1];
+        long bits02 = mLow * factor[1];
+        long bits11 = mHigh * factor[2];
+        long bits01 = mLow * factor[2];
+        long bits10 = mHigh * factor[3];
+        long bits00 = mLow * factor[3];
+
+        int shift = j - 3 * 31 - 21;
+        return ((((((((bits00 >>> 31) + bits01 + bits10) >>> 31)
+                + bits02 + bits11) >>> 31)
+                + bits03 + bits12) >>> 21)
+                + (bits13 << 10)) >>> shift;
+    }
+}
@@ -5,48 +5,78 @@
 package io.victoriametrics.client.serialization;
 
 import io.victoriametrics.client.metrics.*;
-import io.victoriametrics.client.utils.Pair;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.util.SortedMap;
-import java.util.concurrent.atomic.LongAdder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Serializer into the Prometheus text exposition format.
+ *
+ * <p>Beginnings of lines are rendered once per series and cached by metric name,
+ * so a scrape only formats values. Serialization into an {@link OutputStream} writes bytes directly
+ * with a pooled {@link ExpositionWriter} and doesn't allocate per series. Both paths format numbers
+ * with {@link NumberEncoder}, so they produce the same output.</p>
+ *
  * @author Valery Kantor
  */
 public class PrometheusSerializationStrategy implements SerializationStrategy {
 
+    private final Map<MetricName, SeriesPrefixes> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * Idle byte writers. Concurrent serializations which find the pool empty create their own writers,
+     * which are dropped if the pool is full when they finish.
+     */
+    private final BlockingQueue<ExpositionWriter> idleWriters =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    @Override
+    public void serialize(Iterable<? extends Metric> metrics, OutputStream out) {
+        ExpositionWriter writer = idleWriters.poll();
+        if (writer == null) {
+            writer = new ExpositionWriter(this::prefixes);
+        }
+
+        writer.reset(out);
+        try {
+            for (Metric metric : metrics) {
+                metric.accept(writer);
+            }
+            writer.finish();
+        } catch (IOException | UncheckedIOException e) {
+            throw new MetricSerializationException("Unable to write metrics", e);
+        } finally {
+            idleWriters.offer(writer);
+        }
+    }
+
     public void serialize(Metric metric, Writer writer) {
         MetricVisitor visitor = new MetricVisitor() {
             @Override
             public void visit(Counter counter) {
-                String prefix = counter.getName();
-                long value = counter.get();
-
-                try {
-                    writer.write(prefix);
-                    writer.write(" ");
-                    writer.write(String.valueOf(value));
-                    writer.write("\n");
-                } catch (IOException e) {
-                    throw new MetricSerializationException("Unable to serialize Counter metric" + prefix, e);
-                }
+                writeValue(writer, "Counter", counter.getMetricName(), String.valueOf(counter.get()));
+            }
+
+            @Override
+            public void visit(FloatCounter counter) {
+                writeValue(writer, "FloatCounter", counter.getMetricName(), NumberEncoder.toString(counter.get()));
             }
 
             @Override
             public void visit(Gauge gauge) {
-                String prefix = gauge.getName();
-                double value = gauge.get();
-
-                try {
-                    writer.write(prefix);
-                    writer.write(" ");
-                    writer.write(String.valueOf(value));
-                    writer.write("\n");
-                } catch (IOException e) {
-                    throw new MetricSerializationException("Unable to serialize Gauge metric: " + prefix, e);
-                }
+                writeValue(writer, "Gauge", gauge.getMetricName(), NumberEncoder.toString(gauge.get()));
+            }
+
+            @Override
+            public void visit(SettableGauge gauge) {
+                writeValue(writer, "SettableGauge", gauge.getMetricName(), NumberEncoder.toString(gauge.get()));
             }
 
             @Override
@@ -63,119 +93,88 @@ public class PrometheusSerializationStrategy implements SerializationStrategy {
         metric.accept(visitor);
     }
 
-    private void writeHistogram(Writer writer, Histogram histogram) {
-        String prefix = histogram.getName();
-        LongAdder countTotal = new LongAdder();
+    private SeriesPrefixes prefixes(MetricName name) {
+        SeriesPrefixes result = prefixes.get(name);
+        if (result == null) {
+            result = prefixes.computeIfAbsent(name, SeriesPrefixes::new);
+        }
+        return result;
+    }
 
-        histogram.visit((vmrange, count) -> {
-            Pair<String, String> metricPair = splitMetricName(prefix);
-            String name = metricPair.getKey();
-            String labels = metricPair.getValue();
+    private void writeValue(Writer writer, String type, MetricName name, String value) {
+        try {
+            write(writer, prefixes(name).value());
+            writer.write(value);
+            writer.write("\n");
+        } catch (IOException e) {
+            throw new MetricSerializationException("Unable to serialize " + type + " metric: " + name, e);
+        }
+    }
 
-            final String tag = "vmrange=\"" + vmrange + "\"";
-            labels = labels.isEmpty() ? tag : labels + "," + tag;
+    private void writeHistogram(Writer writer, Histogram histogram) {
+        MetricName name = histogram.getMetricName();
+        SeriesPrefixes prefixes = prefixes(name);
+        Histogram.Snapshot snapshot = histogram.snapshot();
 
+        snapshot.visit((vmrange, count) -> {
             try {
-                writer.write(name);
-                writer.write("_bucket");
-                writer.write("{");
-                writer.write(labels);
-                writer.write("} ");
-                writer.write(Double.toString(count));
+                write(writer, prefixes.bucket());
+                writer.write(vmrange);
+                write(writer, SeriesPrefixes.BUCKET_SUFFIX);
+                writer.write(NumberEncoder.toString(count));
                 writer.write("\n");
             }  catch (IOException e) {
-                throw new MetricSerializationException("Unable to serialize Histogram metric: " + prefix, e);
+                throw new MetricSerializationException("Unable to serialize Histogram metric: " + name, e);
             }
-
-            countTotal.add(count);
         });
 
-        Pair<String, String> metricPair = splitMetricName(prefix);
-        String name = metricPair.getKey();
-        String labels = metricPair.getValue();
-        double sum = histogram.getSum();
-
         try {
-            writeSum(writer, name, labels, sum);
-            writeCount(writer, name, labels, countTotal.sum());
+            writeSum(writer, prefixes, snapshot.getSum());
+            writeCount(writer, prefixes, snapshot.getCount());
         } catch (IOException e) {
             throw new MetricSerializationException("Unable to serialize Histogram sum", e);
         }
     }
 
     private void writeSummary(Writer writer, Summary summary) {
-        String prefix = summary.getName();
-
-        Pair<String, String> metricPair = splitMetricName(prefix);
-        String name = metricPair.getKey();
-        final String labels = metricPair.getValue();
-
-        double sum = summary.getSum();
-        double count = summary.getCount();
-
-        SortedMap<Double, Double> values =  summary.getQuantileValues();
-        values.forEach((quantile, value) -> {
-            final String tag = "quantile=\"" + quantile + "\"";
+        MetricName name = summary.getMetricName();
+        SeriesPrefixes prefixes = prefixes(name);
+        Summary.Snapshot snapshot = summary.snapshot();
 
+        snapshot.visit((quantile, value) -> {
             try {
-                writer.write(name);
-                writer.write("{");
-                writer.write(labels.isEmpty() ? tag : labels + "," + tag);
-                writer.write("}");
-                writer.write(Double.toString(value));
+                write(writer, prefixes.quantile(quantile));
+                writer.write(NumberEncoder.toString(value));
                 writer.write("\n");
             } catch (IOException e) {
-                throw new MetricSerializationException("Unable to serialize Sumamry metric " + prefix, e);
+                throw new MetricSerializationException("Unable to serialize Sumamry metric " + name, e);
             }
         });
 
         try {
-            writeSum(writer, name, labels, sum);
-            writeCount(writer, name, labels, count);
+            writeSum(writer, prefixes, snapshot.getSum());
+            writeCount(writer, prefixes, snapshot.getCount());
         } catch (IOException e) {
             throw new MetricSerializationException("Unable to serialize Sumamry", e);
         }
     }
 
-    private void writeSum(Writer writer, String name, String labels, double sum) throws IOException {
-        writer.write(name);
-        writer.write("_sum");
-
-        if (!labels.isEmpty()) {
-            writer.write("{");
-            writer.write(labels);
-            writer.write("}");
-        }
-
-        writer.write(" ");
-        writer.write(Double.toString(sum));
+    private void writeSum(Writer writer, SeriesPrefixes prefixes, double sum) throws IOException {
+        write(writer, prefixes.sum());
+        writer.write(NumberEncoder.toString(sum));
         writer.write("\n");
     }
 
-    private void writeCount(Writer writer, String name, String labels, double sum) throws IOException {
-        writer.write(name);
-        writer.write("_count");
-
-        if (!labels.isEmpty()) {
-            writer.write("{");
-            writer.write(labels);
-            writer.write("}");
-        }
-
-        writer.write(" ");
-        writer.write(Double.toString(sum));
+    private void writeCount(Writer writer, SeriesPrefixes prefixes, double sum) throws IOException {
+        write(writer, prefixes.count());
+        writer.write(NumberEncoder.toString(sum));
         writer.write("\n");
     }
 
-    private Pair<String, String> splitMetricName(String name) {
-        int index = name.indexOf('{');
-        if (index < 0) {
-            return Pair.of(name, "");
-        }
-
-        int tailingIndex = name.indexOf("}");
-        String metricName = name.substring(0, index);
-        String labels = name.substring(index + 1, tailingIndex);
-        return Pair.of(metricName, labels);
+    /**
+     * Write a prefix rendered as UTF-8 bytes.
+     */
+    private static void write(Writer writer, byte[] prefix) throws IOException {
+        writer.write(new String(prefix, StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.Metric;
+import io.victoriametrics.client.metrics.MetricName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Serializer into the Prometheus remote write format: a snappy-compressed {@code WriteRequest} protobuf message,
+ * which can be sent to {@code /api/v1/write} of VictoriaMetrics or any remote write receiver.
+ *
+ * <p>Every serialization produces a single request with all series sampled at the current time.
+ * Labels are encoded once per series and cached by metric name, and encoders with their buffers are pooled,
+ * so a serialization only encodes values and compresses the request.</p>
+ *
+ * <p>The format is binary, so the strategy only serializes into an {@link OutputStream}
+ * and can't be set as the serialization strategy of a registry.</p>
+ */
+public class RemoteWriteSerializationStrategy implements StreamSerializationStrategy {
+
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+    public static final String CONTENT_ENCODING = "snappy";
+    public static final String VERSION = "0.1.0";
+
+    private final Map<MetricName, RemoteWriteSeries> series = new ConcurrentHashMap<>();
+
+    /**
+     * Idle encoders. Concurrent serializations which find the pool empty create their own encoders,
+     * which are dropped if the pool is full when they finish.
+     */
+    private final BlockingQueue<WriteRequestEncoder> idleEncoders =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private final LongSupplier clock;
+
+    public RemoteWriteSerializationStrategy() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock source of sample timestamps in milliseconds
+     */
+    RemoteWriteSerializationStrategy(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void serialize(Iterable<? extends Metric> metrics, OutputStream out) {
+        WriteRequestEncoder encoder = acquireEncoder();
+        encoder.reset(clock.getAsLong());
+        try {
+            for (Metric metric : metrics) {
+                metric.accept(encoder);
+            }
+            encoder.finish(out);
+        } catch (IOException e) {
+            throw new MetricSerializationException("Unable to write metrics", e);
+        } finally {
+            idleEncoders.offer(encoder);
+        }
+    }
+
+    /**
+     * Serialize metrics into requests of limited size, e.g. to stay below the request size limit of the receiver.
+     * A request is completed after the metric at which its uncompressed size reaches the limit,
+     * so series of a histogram or a summary are never split between requests.
+     * All requests have the same sample timestamp. No request is produced for no metrics.
+     *
+     * @param metrics        metrics to serialize
+     * @param maxRequestSize uncompressed size of a request in bytes, after which the request is completed
+     * @param consumer       consumer of compressed requests
+     */
+    public void serialize(Iterable<? extends Metric> metrics, int maxRequestSize, Consumer<byte[]> consumer) {
+        if (maxRequestSize <= 0) {
+            throw new IllegalArgumentException("Request size must be positive");
+        }
+
+        WriteRequestEncoder encoder = acquireEncoder();
+        encoder.reset(clock.getAsLong());
+        try {
+            for (Metric metric : metrics) {
+                metric.accept(encoder);
+                if (encoder.size() >= maxRequestSize) {
+                    consumer.accept(finish(encoder));
+                    encoder.reset(encoder.getTimestamp());
+                }
+            }
+            if (encoder.size() > 0) {
+                consumer.accept(finish(encoder));
+            }
+        } catch (IOException e) {
+            throw new MetricSerializationException("Unable to write metrics", e);
+        } finally {
+            idleEncoders.offer(encoder);
+        }
+    }
+
+    private WriteRequestEncoder acquireEncoder() {
+        WriteRequestEncoder encoder = idleEncoders.poll();
+        return encoder != null ? encoder : new WriteRequestEncoder(this::series);
+    }
+
+    private static byte[] finish(WriteRequestEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoder.size() / 2 + 64);
+        encoder.finish(out);
+        return out.toByteArray();
+    }
+
+    private RemoteWriteSeries series(MetricName name) {
+        RemoteWriteSeries result = series.get(name);
+        if (result == null) {
+            result = series.computeIfAbsent(name, RemoteWriteSeries::new);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.Histogram;
+import io.victoriametrics.client.metrics.MetricName;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pre-encoded labels of a single series in the remote write protobuf format.
+ *
+ * <p>Labels are encoded once per series as repeated {@code Label} fields of a {@code TimeSeries} message,
+ * sorted by name including {@code __name__}. Labels of buckets and quantiles are split around the position
+ * of the {@code vmrange} or {@code quantile} label, whose encoded values are shared by all series.</p>
+ */
+final class RemoteWriteSeries {
+
+    private static final int LABEL_FIELD = 1 << 3 | 2;
+    private static final int NAME_FIELD = 1 << 3 | 2;
+    private static final int VALUE_FIELD = 2 << 3 | 2;
+
+    private static final String RANGE_LABEL = "vmrange";
+    private static final String QUANTILE_LABEL = "quantile";
+
+    /**
+     * {@code vmrange} labels of histogram slots.
+     */
+    static final byte[][] RANGES = new byte[Histogram.getSlotsCount()][];
+
+    static {
+        for (int slot = 0; slot < RANGES.length; slot++) {
+            RANGES[slot] = label(RANGE_LABEL, Histogram.getSlotRange(slot));
+        }
+    }
+
+    /**
+     * Known quantiles and their labels, copied on write.
+     */
+    private static volatile double[] quantiles = new double[0];
+    private static volatile byte[][] quantileLabels = new byte[0][];
+
+    final byte[] value;
+    final byte[] sum;
+    final byte[] count;
+
+    /**
+     * Labels of {@code name_bucket} sorted before and after {@code vmrange}.
+     */
+    final byte[] bucketHead;
+    final byte[] bucketTail;
+
+    /**
+     * Labels of {@code name} sorted before and after {@code quantile}.
+     */
+    final byte[] quantileHead;
+    final byte[] quantileTail;
+
+    RemoteWriteSeries(MetricName name) {
+        this.value = encode(name, "", null)[0];
+        this.sum = encode(name, "_sum", null)[0];
+        this.count = encode(name, "_count", null)[0];
+
+        byte[][] bucket = encode(name, "_bucket", RANGE_LABEL);
+        this.bucketHead = bucket[0];
+        this.bucketTail = bucket[1];
+
+        byte[][] quantile = encode(name, "", QUANTILE_LABEL);
+        this.quantileHead = quantile[0];
+        this.quantileTail = quantile[1];
+    }
+
+    /**
+     * Get the encoded {@code quantile} label.
+     */
+    static byte[] quantileLabel(double quantile) {
+        double[] quantiles = RemoteWriteSeries.quantiles;
+        byte[][] labels = quantileLabels;
+        for (int i = 0; i < quantiles.length; i++) {
+            if (quantiles[i] == quantile) {
+                return labels[i];
+            }
+        }
+        return addQuantile(quantile);
+    }
+
+    private static synchronized byte[] addQuantile(double quantile) {
+        int length = quantiles.length;
+        for (int i = 0; i < length; i++) {
+            if (quantiles[i] == quantile) {
+                return quantileLabels[i];
+            }
+        }
+
+        byte[] label = label(QUANTILE_LABEL, Double.toString(quantile));
+        double[] newQuantiles = Arrays.copyOf(quantiles, length + 1);
+        byte[][] newLabels = Arrays.copyOf(quantileLabels, length + 1);
+        newQuantiles[length] = quantile;
+        newLabels[length] = label;
+
+        quantileLabels = newLabels;
+        quantiles = newQuantiles;
+        return label;
+    }
+
+    /**
+     * Encode sorted labels of a series with a suffixed name, split around the position of an extra label.
+     */
+    private static byte[][] encode(MetricName name, String suffix, String split) {
+        List<String[]> labels = new ArrayList<>(name.getLabelsCount() + 1);
+        labels.add(new String[]{"__name__", name.getName() + suffix});
+        for (int i = 0; i < name.getLabelsCount(); i++) {
+            labels.add(new String[]{name.getLabelName(i), name.getUnescapedLabelValue(i)});
+        }
+        labels.sort(Comparator.comparing(label -> label[0]));
+
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        for (String[] label : labels) {
+            ByteArrayOutputStream out = split != null && label[0].compareTo(split) > 0 ? tail : head;
+            out.writeBytes(label(label[0], label[1]));
+        }
+        return new byte[][]{head.toByteArray(), tail.toByteArray()};
+    }
+
+    /**
+     * Encode a {@code Label} field of a {@code TimeSeries} message.
+     */
+    private static byte[] label(String name, String value) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        writeBytesField(message, NAME_FIELD, nameBytes);
+        writeBytesField(message, VALUE_FIELD, valueBytes);
+
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+        writeBytesField(field, LABEL_FIELD, message.toByteArray());
+        return field.toByteArray();
+    }
+
+    private static void writeBytesField(ByteArrayOutputStream out, int tag, byte[] bytes) {
+        out.write(tag);
+        int length = bytes.length;
+        while ((length & ~0x7f) != 0) {
+            out.write((length & 0x7f) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.writeBytes(bytes);
+    }
+}
@@ -6,14 +6,37 @@ package io.victoriametrics.client.serialization;
 
 import io.victoriametrics.client.metrics.Metric;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.Collection;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author Valery Kantor
  */
-public interface SerializationStrategy {
+public interface SerializationStrategy extends StreamSerializationStrategy {
 
     void serialize(Metric metric, Writer writer);
 
+    /**
+     * Serialize metrics into an output stream as UTF-8 text.
+     * The default implementation encodes the output of {@link #serialize(Metric, Writer)}.
+     * The stream is flushed but not closed.
+     */
+    @Override
+    default void serialize(Iterable<? extends Metric> metrics, OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (Metric metric : metrics) {
+            serialize(metric, writer);
+        }
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new MetricSerializationException("Unable to write metrics", e);
+        }
+    }
+
 }
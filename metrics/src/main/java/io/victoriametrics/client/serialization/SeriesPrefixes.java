@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.MetricName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pre-rendered beginnings of exposition lines of a single series, up to the value, as UTF-8 bytes.
+ *
+ * <p>Each kind of prefix is rendered on first use and kept, so serialization of a series only formats its values,
+ * and counters and gauges only keep the prefix of their value line.</p>
+ */
+final class SeriesPrefixes {
+
+    static final byte[] BUCKET_SUFFIX = "\"} ".getBytes(StandardCharsets.UTF_8);
+
+    private final MetricName name;
+
+    /**
+     * Prefixes rendered on first use. Racing threads render equal prefixes, so either may be kept.
+     */
+    private volatile byte[] value;
+    private volatile byte[] bucket;
+    private volatile byte[] sum;
+    private volatile byte[] count;
+
+    /**
+     * Quantiles and their lines {@code name{labels,quantile="0.5"} }, copied on write.
+     */
+    private volatile double[] quantiles = new double[0];
+    private volatile byte[][] quantileLines = new byte[0][];
+
+    SeriesPrefixes(MetricName name) {
+        this.name = name;
+    }
+
+    /**
+     * {@code name{labels} }
+     */
+    byte[] value() {
+        byte[] result = value;
+        if (result == null) {
+            value = result = bytes(render(name, "", null) + " ");
+        }
+        return result;
+    }
+
+    /**
+     * {@code name_bucket{labels,vmrange="}, followed by a range and {@link #BUCKET_SUFFIX}
+     */
+    byte[] bucket() {
+        byte[] result = bucket;
+        if (result == null) {
+            bucket = result = bytes(render(name, "_bucket", "vmrange=\""));
+        }
+        return result;
+    }
+
+    /**
+     * {@code name_sum{labels} }
+     */
+    byte[] sum() {
+        byte[] result = sum;
+        if (result == null) {
+            sum = result = bytes(render(name, "_sum", null) + " ");
+        }
+        return result;
+    }
+
+    /**
+     * {@code name_count{labels} }
+     */
+    byte[] count() {
+        byte[] result = count;
+        if (result == null) {
+            count = result = bytes(render(name, "_count", null) + " ");
+        }
+        return result;
+    }
+
+    /**
+     * Get the line prefix of a summary quantile.
+     */
+    byte[] quantile(double quantile) {
+        double[] quantiles = this.quantiles;
+        byte[][] lines = this.quantileLines;
+        for (int i = 0; i < quantiles.length; i++) {
+            if (quantiles[i] == quantile) {
+                return lines[i];
+            }
+        }
+        return addQuantile(quantile);
+    }
+
+    /**
+     * Add a quantile if it's missing and return its line.
+     * Quantiles are published last, so readers which see a quantile also see its line.
+     */
+    private synchronized byte[] addQuantile(double quantile) {
+        int length = quantiles.length;
+        for (int i = 0; i < length; i++) {
+            if (quantiles[i] == quantile) {
+                return quantileLines[i];
+            }
+        }
+
+        byte[] line = bytes(render(name, "", "quantile=\"" + quantile + "\"}") + " ");
+        double[] newQuantiles = Arrays.copyOf(quantiles, length + 1);
+        byte[][] newLines = Arrays.copyOf(quantileLines, length + 1);
+        newQuantiles[length] = quantile;
+        newLines[length] = line;
+
+        quantileLines = newLines;
+        quantiles = newQuantiles;
+        return line;
+    }
+
+    private static byte[] bytes(String prefix) {
+        return prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Render a metric name with a suffix and an opening of an extra label.
+     * The closing curly brace is omitted when the extra label is given.
+     */
+    private static String render(MetricName name, String suffix, String tag) {
+        StringBuilder sb = new StringBuilder(name.getName()).append(suffix);
+
+        int labelsCount = name.getLabelsCount();
+        if (labelsCount == 0 && tag == null) {
+            return sb.toString();
+        }
+
+        sb.append('{');
+        for (int i = 0; i < labelsCount; i++) {
+            if (i > 0) {
+                sb.append(name.getLabelSeparator());
+            }
+            sb.append(name.getLabelName(i)).append("=\"").append(name.getLabelValue(i)).append('"');
+        }
+
+        if (tag == null) {
+            return sb.append('}').toString();
+        }
+        if (labelsCount > 0) {
+            sb.append(',');
+        }
+        return sb.append(tag).toString();
+    }
+}
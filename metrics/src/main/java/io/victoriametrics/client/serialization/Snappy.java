@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compressor into the snappy block format, which is the body encoding of Prometheus remote write requests.
+ *
+ * <p>This is a port of the greedy block encoder of the reference implementation: input is split into
+ * 64KB blocks, and matches of at least four bytes are found with a hash table of recent positions.
+ * The caller provides the output array and the hash table, so compression doesn't allocate.</p>
+ */
+final class Snappy {
+
+    static final int TABLE_SIZE = 1 << 14;
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Bytes at the end of a block which are always emitted as a literal, so matching may read ahead.
+     */
+    private static final int INPUT_MARGIN = 16 - 1;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private Snappy() {
+    }
+
+    /**
+     * Get the size of an output array sufficient to compress {@code length} bytes.
+     */
+    static int maxCompressedLength(int length) {
+        return 32 + length + length / 6;
+    }
+
+    /**
+     * Compress {@code src[0, length)} into {@code dst}.
+     *
+     * @param dst   output of at least {@link #maxCompressedLength(int)} bytes
+     * @param table hash table of {@link #TABLE_SIZE} entries
+     * @return length of the compressed data
+     */
+    static int compress(byte[] src, int length, byte[] dst, int[] table) {
+        int position = writeVarint(dst, 0, length);
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            position = compressBlock(src, start, Math.min(start + BLOCK_SIZE, length), dst, position, table);
+        }
+        return position;
+    }
+
+    private static int compressBlock(byte[] src, int start, int end, byte[] dst, int position, int[] table) {
+        if (end - start < INPUT_MARGIN + 2) {
+            return emitLiteral(dst, position, src, start, end - start);
+        }
+
+        Arrays.fill(table, -1);
+        int limit = end - INPUT_MARGIN;
+        int nextEmit = start;
+        int s = start + 1;
+        int nextHash = hash(load(src, s));
+
+        outer:
+        while (true) {
+            // skip faster through data which doesn't compress
+            int skip = 32;
+            int nextS = s;
+            int candidate;
+            do {
+                s = nextS;
+                int step = skip >> 5;
+                nextS = s + step;
+                skip += step;
+                if (nextS > limit) {
+                    break outer;
+                }
+                candidate = table[nextHash];
+                table[nextHash] = s;
+                nextHash = hash(load(src, nextS));
+            } while (candidate < 0 || load(src, s) != load(src, candidate));
+
+            position = emitLiteral(dst, position, src, nextEmit, s - nextEmit);
+
+            // emit copies while the next position continues to match
+            do {
+                int base = s;
+                s += 4;
+                for (int i = candidate + 4; s < end && src[i] == src[s]; i++) {
+                    s++;
+                }
+                position = emitCopy(dst, position, base - candidate, s - base);
+                nextEmit = s;
+                if (s >= limit) {
+                    break outer;
+                }
+
+                table[hash(load(src, s - 1))] = s - 1;
+                int currentHash = hash(load(src, s));
+                candidate = table[currentHash];
+                table[currentHash] = s;
+            } while (candidate >= 0 && load(src, s) == load(src, candidate));
+
+            s++;
+            nextHash = hash(load(src, s));
+        }
+
+        if (nextEmit < end) {
+            position = emitLiteral(dst, position, src, nextEmit, end - nextEmit);
+        }
+        return position;
+    }
+
+    private static int emitLiteral(byte[] dst, int position, byte[] src, int offset, int length) {
+        int n = length - 1;
+        if (n < 60) {
+            dst[position++] = (byte) (n << 2);
+        } else if (n < 1 << 8) {
+            dst[position++] = (byte) (60 << 2);
+            dst[position++] = (byte) n;
+        } else {
+            // a block is at most 64KB
+            dst[position++] = (byte) (61 << 2);
+            dst[position++] = (byte) n;
+            dst[position++] = (byte) (n >> 8);
+        }
+        System.arraycopy(src, offset, dst, position, length);
+        return position + length;
+    }
+
+    private static int emitCopy(byte[] dst, int position, int offset, int length) {
+        while (length >= 68) {
+            position = emitCopy2(dst, position, offset, 64);
+            length -= 64;
+        }
+        if (length > 64) {
+            position = emitCopy2(dst, position, offset, 60);
+            length -= 60;
+        }
+        if (length >= 12 || offset >= 2048) {
+            return emitCopy2(dst, position, offset, length);
+        }
+        dst[position++] = (byte) (((offset >> 8) << 5) | ((length - 4) << 2) | 1);
+        dst[position++] = (byte) offset;
+        return position;
+    }
+
+    private static int emitCopy2(byte[] dst, int position, int offset, int length) {
+        dst[position++] = (byte) (((length - 1) << 2) | 2);
+        dst[position++] = (byte) offset;
+        dst[position++] = (byte) (offset >> 8);
+        return position;
+    }
+
+    private static int writeVarint(byte[] dst, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            dst[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dst[position++] = (byte) value;
+        return position;
+    }
+
+    private static int load(byte[] src, int offset) {
+        return (int) INT.get(src, offset);
+    }
+
+    private static int hash(int value) {
+        return (value * 0x1e35a7bd) >>> (32 - 14);
+    }
+}
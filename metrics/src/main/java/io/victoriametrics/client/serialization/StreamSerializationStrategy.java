@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.Metric;
+
+import java.io.OutputStream;
+
+/**
+ * Serializer of metrics into a stream of bytes, which may be a binary format.
+ * Text formats implement {@link SerializationStrategy}, which also supports writers.
+ */
+@FunctionalInterface
+public interface StreamSerializationStrategy {
+
+    /**
+     * Serialize metrics into an output stream. The stream is flushed but not closed.
+     */
+    void serialize(Iterable<? extends Metric> metrics, OutputStream out);
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Encoder of metrics into a snappy-compressed remote write {@code WriteRequest}.
+ *
+ * <p>Every series is written as a {@code TimeSeries} message with a single sample from pre-encoded labels,
+ * so encoding a metric only writes its values. The protobuf message is assembled in a buffer
+ * which grows to the largest request, and is compressed into a second buffer when finished.
+ * Both buffers are kept between requests. Instances are not thread-safe.</p>
+ */
+final class WriteRequestEncoder implements MetricVisitor, Summary.Visitor {
+
+    private static final int TIME_SERIES_FIELD = 1 << 3 | 2;
+    private static final int SAMPLE_FIELD = 2 << 3 | 2;
+    private static final int SAMPLE_VALUE_FIELD = 1 << 3 | 1;
+    private static final int SAMPLE_TIMESTAMP_FIELD = 2 << 3;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    /**
+     * Upper bound of the encoded size of a {@code TimeSeries} message without its labels.
+     */
+    private static final int MAX_SAMPLE_SIZE = 1 + 5 + 1 + 1 + 1 + 8 + 1 + 10;
+
+    private final Function<MetricName, RemoteWriteSeries> series;
+    private final long[] counts = new long[Histogram.getSlotsCount()];
+    private final int[] table = new int[Snappy.TABLE_SIZE];
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private byte[] compressed = new byte[0];
+    private int position;
+    private long timestamp;
+    private RemoteWriteSeries current;
+
+    WriteRequestEncoder(Function<MetricName, RemoteWriteSeries> series) {
+        this.series = series;
+    }
+
+    /**
+     * Start a new request.
+     *
+     * @param timestamp timestamp of samples in milliseconds
+     */
+    void reset(long timestamp) {
+        this.timestamp = timestamp;
+        this.position = 0;
+    }
+
+    /**
+     * Timestamp of samples of the current request in milliseconds.
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Uncompressed size of the current request in bytes.
+     */
+    int size() {
+        return position;
+    }
+
+    /**
+     * Compress the request into the stream.
+     */
+    void finish(OutputStream out) throws IOException {
+        int maxLength = Snappy.maxCompressedLength(position);
+        if (compressed.length < maxLength) {
+            compressed = new byte[maxLength];
+        }
+
+        int length = Snappy.compress(buffer, position, compressed, table);
+        current = null;
+        out.write(compressed, 0, length);
+    }
+
+    @Override
+    public void visit(Counter counter) {
+        writeSeries(series.apply(counter.getMetricName()).value, counter.get());
+    }
+
+    @Override
+    public void visit(FloatCounter counter) {
+        writeSeries(series.apply(counter.getMetricName()).value, counter.get());
+    }
+
+    @Override
+    public void visit(Gauge gauge) {
+        writeSeries(series.apply(gauge.getMetricName()).value, gauge.get());
+    }
+
+    @Override
+    public void visit(SettableGauge gauge) {
+        writeSeries(series.apply(gauge.getMetricName()).value, gauge.get());
+    }
+
+    @Override
+    public void visit(Histogram histogram) {
+        RemoteWriteSeries series = this.series.apply(histogram.getMetricName());
+        Arrays.fill(counts, 0);
+        double sum = histogram.collect(counts);
+
+        long total = 0;
+        for (int slot = 0; slot < counts.length; slot++) {
+            long count = counts[slot];
+            if (count > 0) {
+                writeSeries(series.bucketHead, RemoteWriteSeries.RANGES[slot], series.bucketTail, count);
+                total += count;
+            }
+        }
+
+        writeSeries(series.sum, sum);
+        writeSeries(series.count, total);
+    }
+
+    @Override
+    public void visit(Summary summary) {
+        RemoteWriteSeries series = this.series.apply(summary.getMetricName());
+        Summary.Snapshot snapshot = summary.snapshot();
+
+        current = series;
+        snapshot.visit(this);
+        current = null;
+
+        writeSeries(series.sum, snapshot.getSum());
+        writeSeries(series.count, snapshot.getCount());
+    }
+
+    /**
+     * Quantile of the summary being encoded.
+     */
+    @Override
+    public void value(double quantile, double value) {
+        writeSeries(current.quantileHead, RemoteWriteSeries.quantileLabel(quantile), current.quantileTail, value);
+    }
+
+    private void writeSeries(byte[] labels, double value) {
+        writeSeries(labels, null, null, value);
+    }
+
+    /**
+     * Write a {@code TimeSeries} field with labels concatenated from up to three parts.
+     */
+    private void writeSeries(byte[] head, byte[] label, byte[] tail, double value) {
+        int labelsLength = head.length + (label != null ? label.length + tail.length : 0);
+        int sampleLength = 1 + 8 + 1 + varintSize(timestamp);
+        int seriesLength = labelsLength + 1 + varintSize(sampleLength) + sampleLength;
+        ensureCapacity(labelsLength + MAX_SAMPLE_SIZE);
+
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        buffer[position++] = TIME_SERIES_FIELD;
+        position = writeVarint(buffer, position, seriesLength);
+
+        System.arraycopy(head, 0, buffer, position, head.length);
+        position += head.length;
+        if (label != null) {
+            System.arraycopy(label, 0, buffer, position, label.length);
+            position += label.length;
+            System.arraycopy(tail, 0, buffer, position, tail.length);
+            position += tail.length;
+        }
+
+        buffer[position++] = SAMPLE_FIELD;
+        position = writeVarint(buffer, position, sampleLength);
+        buffer[position++] = SAMPLE_VALUE_FIELD;
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (i * 8));
+        }
+        buffer[position++] = SAMPLE_TIMESTAMP_FIELD;
+        this.position = writeVarint(buffer, position, timestamp);
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length - position < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varintSize(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+}
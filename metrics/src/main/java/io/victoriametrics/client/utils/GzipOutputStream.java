@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Streaming gzip compression with pooled {@link Deflater} instances.
+ *
+ * <p>Unlike {@link java.util.zip.GZIPOutputStream}, which allocates and releases native zlib state per stream,
+ * deflaters are reset and returned to a bounded pool per compression level when a stream is closed,
+ * so compressing a scrape or a push body doesn't set up zlib from scratch.</p>
+ */
+public final class GzipOutputStream extends DeflaterOutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b,      // magic
+            Deflater.DEFLATED,      // compression method
+            0,                      // flags
+            0, 0, 0, 0,             // modification time
+            0,                      // extra flags
+            (byte) 0xff             // unknown OS
+    };
+
+    /**
+     * Idle deflaters indexed by compression level.
+     */
+    private static final List<BlockingQueue<Deflater>> pools = new ArrayList<>();
+
+    static {
+        for (int level = Deflater.NO_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            pools.add(new ArrayBlockingQueue<>(POOL_SIZE));
+        }
+    }
+
+    private final int level;
+    private final CRC32 crc = new CRC32();
+    private boolean closed;
+
+    private GzipOutputStream(OutputStream out, Deflater deflater, int level) throws IOException {
+        super(out, deflater, BUFFER_SIZE);
+        this.level = level;
+        out.write(HEADER);
+    }
+
+    /**
+     * Open a gzip stream on top of {@code out} with a pooled deflater.
+     * The deflater is returned to the pool when the stream is closed.
+     *
+     * @param level compression level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+     *              or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public static GzipOutputStream open(OutputStream out, int level) throws IOException {
+        if (level == Deflater.DEFAULT_COMPRESSION) {
+            level = 6;
+        }
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+
+        Deflater deflater = pools.get(level).poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        return new GzipOutputStream(out, deflater, level);
+    }
+
+    /**
+     * Check whether the value of an {@code Accept-Encoding} header allows gzip.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equalsIgnoreCase("x-gzip")) {
+                continue;
+            }
+
+            boolean acceptable = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        acceptable = Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        acceptable = false;
+                    }
+                }
+            }
+            if (acceptable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    /**
+     * Write the remaining compressed data and the gzip trailer without closing the underlying stream.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (def.finished()) {
+            return;
+        }
+
+        super.finish();
+        writeInt((int) crc.getValue());
+        writeInt((int) def.getBytesRead());
+    }
+
+    /**
+     * Finish the stream, close the underlying stream and return the deflater to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            finish();
+            out.close();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Discard the stream without writing the remaining compressed data or the trailer,
+     * and return the deflater to the pool. The underlying stream is not closed.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release();
+    }
+
+    private void release() {
+        def.reset();
+        if (!pools.get(level).offer(def)) {
+            def.end();
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+}
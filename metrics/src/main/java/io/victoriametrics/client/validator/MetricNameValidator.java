@@ -1,10 +1,6 @@
 package io.victoriametrics.client.validator;
 
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static java.lang.String.format;
 
 /**
  * Prometheus-compatible metric name validator.
@@ -18,12 +14,12 @@ import static java.lang.String.format;
  */
 public class MetricNameValidator {
 
-    private static final Pattern metricNamePattern = Pattern.compile("^[a-zA-Z_:][a-zA-Z0-9_:]*$");
-    private static final Pattern labelPattern = Pattern.compile("^[a-zA-Z_][a-zA-Z0-9_]*$");
-
     /**
      * Validate metric name.
      *
+     * <p>The name is checked in a single pass over its characters, without regular expressions
+     * and intermediate strings.</p>
+     *
      * @param name
      *        A name to be validated
      *
@@ -31,73 +27,145 @@ public class MetricNameValidator {
      *          If the metric name is invalid
      */
     public void validate(String name) {
+        validate(name, null);
+    }
+
+    /**
+     * Validate metric name and pass its parts to {@code consumer}.
+     *
+     * @param name
+     *        A name to be validated
+     * @param consumer
+     *        Receiver of the metric name and labels, may be {@code null}
+     *
+     * @throws InvalidMetricNameException
+     *          If the metric name is invalid
+     */
+    public void validate(String name, PartsConsumer consumer) {
         Objects.requireNonNull(name, "Metric name cannot be null");
 
         if (name.isEmpty()) {
             throw new InvalidMetricNameException("Metric name cannot be empty");
         }
 
-        int index = name.indexOf("{");
-
-        if (index < 0) {
-            validateMetricName(name);
-            return;
+        final int length = name.length();
+        int i = 0;
+        while (i < length && isMetricNameChar(name.charAt(i), i == 0)) {
+            i++;
         }
 
-        String metricName = name.substring(0, index);
-        validateMetricName(metricName);
-
-        if (!name.endsWith("}")) {
-            throw new InvalidMetricNameException("No closing curly brace " + name);
+        if (i == 0 || (i < length && name.charAt(i) != '{')) {
+            throw new InvalidMetricNameException("Invalid metric name " + name);
+        }
+        if (consumer != null) {
+            consumer.metricName(name, i);
+        }
+        if (i == length) {
+            return;
         }
 
-        String labels = name.substring(index + 1, name.lastIndexOf("}"));
-
-        if (labels.isEmpty()) return;
-        validateLabels(labels);
+        validateLabels(name, i + 1, consumer);
     }
 
-    private void validateLabels(String input) {
-        String[] labels = input.split(",", -1);
+    /**
+     * Validate labels starting after the opening curly brace at {@code start}.
+     */
+    private void validateLabels(String name, int start, PartsConsumer consumer) {
+        final int length = name.length();
+        int i = skipSpaces(name, start);
+
+        if (i < length && name.charAt(i) == '}') {
+            checkEnd(name, i);
+            return;
+        }
 
-        for (String label : labels) {
-            int delimiterIndex = label.indexOf("=");
-            if (delimiterIndex < 0) {
-                throw new InvalidMetricNameException("Missing delimiter '=' after '" + label + ",");
+        while (true) {
+            i = skipSpaces(name, i);
+            int labelStart = i;
+            while (i < length && isLabelNameChar(name.charAt(i), i == labelStart)) {
+                i++;
             }
+            if (i == labelStart) {
+                throw new InvalidMetricNameException("Invalid label name at position " + i + " in " + name);
+            }
+            int labelEnd = i;
 
-            String labelName = label.substring(0, delimiterIndex).trim();
-            validateLabelName(labelName);
-
-            String labelValue = label.substring(delimiterIndex + 1);
+            i = skipSpaces(name, i);
+            if (i >= length || name.charAt(i) != '=') {
+                throw new InvalidMetricNameException("Missing delimiter '=' after '" +
+                        name.substring(labelStart, labelEnd) + "' label in " + name);
+            }
+            i++;
 
-            if (labelValue.isEmpty() || labelValue.charAt(0) != '"') {
-                String message = "Missing starring '\"' for '" +
-                        labelName + "' label, '" + labelValue + "'";
+            if (i >= length || name.charAt(i) != '"') {
+                throw new InvalidMetricNameException("Missing starring '\"' for '" +
+                        name.substring(labelStart, labelEnd) + "' label in " + name);
+            }
+            int valueStart = ++i;
 
-                throw new InvalidMetricNameException(message);
+            while (i < length && name.charAt(i) != '"') {
+                // skip escaped character
+                i += name.charAt(i) == '\\' ? 2 : 1;
+            }
+            if (i >= length) {
+                throw new InvalidMetricNameException("Missing tailing '\"' for '" +
+                        name.substring(labelStart, labelEnd) + "' label in " + name);
             }
+            if (consumer != null) {
+                consumer.label(name, labelStart, labelEnd, valueStart, i);
+            }
+            i = skipSpaces(name, i + 1);
 
-            if (!labelValue.substring(1).contains("\"")) {
-                String message = "Missing tailing '\"' for '" +
-                        labelName + "' label, '" + labelValue + "'";
-                throw new InvalidMetricNameException(message);
+            if (i >= length) {
+                throw new InvalidMetricNameException("No closing curly brace " + name);
+            }
+            char c = name.charAt(i);
+            if (c == '}') {
+                checkEnd(name, i);
+                return;
             }
+            if (c != ',') {
+                throw new InvalidMetricNameException("Unexpected character '" + c + "' at position " + i +
+                        " in " + name);
+            }
+            i++;
         }
     }
 
-    private void validateMetricName(String name) throws InvalidMetricNameException {
-        Matcher matcher = metricNamePattern.matcher(name);
-        if (!matcher.matches()) {
-            throw new InvalidMetricNameException("Invalid metric name " + name);
+    private static void checkEnd(String name, int closingBrace) {
+        if (closingBrace != name.length() - 1) {
+            throw new InvalidMetricNameException("Unexpected characters after closing curly brace " + name);
         }
     }
 
-    private void validateLabelName(String name) {
-        Matcher matcher = labelPattern.matcher(name);
-        if (!matcher.matches()) {
-            throw new InvalidMetricNameException("Invalid label name " + name);
+    private static int skipSpaces(String name, int i) {
+        while (i < name.length() && name.charAt(i) == ' ') {
+            i++;
         }
+        return i;
+    }
+
+    private static boolean isMetricNameChar(char c, boolean first) {
+        return isLabelNameChar(c, first) || c == ':';
+    }
+
+    private static boolean isLabelNameChar(char c, boolean first) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (!first && c >= '0' && c <= '9');
     }
 
+    /**
+     * Receiver of parts of a valid metric name, given as positions in the name.
+     */
+    public interface PartsConsumer {
+
+        /**
+         * @param end End of the metric name, exclusive
+         */
+        void metricName(String name, int end);
+
+        /**
+         * The label value is passed as written in the name, with escape sequences.
+         */
+        void label(String name, int labelStart, int labelEnd, int valueStart, int valueEnd);
+    }
 }
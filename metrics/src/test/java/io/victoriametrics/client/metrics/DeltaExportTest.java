@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeltaExportTest {
+
+    @Test
+    public void writeChangedMetrics() {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter counter = registry.createCounter().name("requests_total").register();
+        FloatCounter floatCounter = registry.createFloatCounter().name("bytes_total").register();
+        SettableGauge settableGauge = registry.createSettableGauge().name("temperature").register();
+        Histogram histogram = registry.createHistogram().name("duration_seconds").register();
+        Summary summary = registry.getOrCreateSummary("size");
+        registry.createGauge().withSupplier(() -> 1.0).name("threads").register();
+
+        DeltaExport export = registry.createDeltaExport(Duration.ofHours(1));
+        assertEquals(6, lines(export).stream().map(DeltaExportTest::metricName).distinct().count());
+
+        assertEquals(List.of("threads 1.0"), lines(export));
+
+        counter.inc();
+        settableGauge.set(2.5);
+        assertEquals(List.of("requests_total 1", "temperature 2.5", "threads 1.0"), sorted(lines(export)));
+
+        floatCounter.inc(0.5);
+        histogram.update(1);
+        summary.update(1);
+        List<String> lines = lines(export);
+        assertEquals(List.of("bytes_total 0.5", "threads 1.0"),
+                sorted(lines.stream().filter(line -> !line.startsWith("duration") && !line.startsWith("size")).toList()));
+        assertEquals(3, lines.stream().filter(line -> line.startsWith("duration_seconds")).count());
+        assertEquals(7, lines.stream().filter(line -> line.startsWith("size")).count());
+
+        assertEquals(List.of("threads 1.0"), lines(export));
+    }
+
+    @Test
+    public void writeNewMetrics() {
+        MetricRegistry registry = MetricRegistry.create();
+        DeltaExport export = registry.createDeltaExport(Duration.ofHours(1));
+        assertEquals(List.of(), lines(export));
+
+        registry.createCounter().name("foo").register();
+        assertEquals(List.of("foo 0"), lines(export));
+        assertEquals(List.of(), lines(export));
+    }
+
+    @Test
+    public void refreshAllMetrics() throws InterruptedException {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+        registry.createCounter().name("bar").register().inc();
+
+        DeltaExport export = registry.createDeltaExport(Duration.ofHours(1));
+        assertEquals(2, lines(export).size());
+        assertEquals(0, lines(export).size());
+
+        export.requestFullRefresh();
+        assertEquals(2, lines(export).size());
+        assertEquals(0, lines(export).size());
+
+        DeltaExport always = registry.createDeltaExport(Duration.ZERO);
+        assertEquals(2, lines(always).size());
+        assertEquals(2, lines(always).size());
+
+        DeltaExport periodic = registry.createDeltaExport(Duration.ofMillis(50));
+        assertEquals(2, lines(periodic).size());
+        Thread.sleep(60);
+        assertEquals(2, lines(periodic).size());
+    }
+
+    @Test
+    public void trackChangesPerExport() {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter counter = registry.createCounter().name("foo").register();
+        DeltaExport first = registry.createDeltaExport(Duration.ofHours(1));
+        DeltaExport second = registry.createDeltaExport(Duration.ofHours(1));
+        lines(first);
+        lines(second);
+
+        counter.inc();
+        assertEquals(List.of("foo 1"), lines(first));
+        assertEquals(List.of("foo 1"), lines(second));
+        assertEquals(List.of(), lines(first));
+    }
+
+    @Test
+    public void writeUpdatesRacingWithExports() throws InterruptedException {
+        MetricRegistry registry = MetricRegistry.create();
+        DeltaExport export = registry.createDeltaExport(Duration.ofHours(1));
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            Counter counter = registry.createCounter().name("counter_" + i).register();
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 200_000; j++) {
+                    counter.inc();
+                }
+            });
+        }
+
+        Map<String, String> exported = new HashMap<>();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        while (Arrays.stream(threads).anyMatch(Thread::isAlive)) {
+            lines(export).forEach(line -> exported.put(metricName(line), line));
+        }
+        lines(export).forEach(line -> exported.put(metricName(line), line));
+
+        assertEquals(Map.of("counter_0", "counter_0 200000", "counter_1", "counter_1 200000"), exported);
+    }
+
+    @Test
+    public void rejectNegativeInterval() {
+        MetricRegistry registry = MetricRegistry.create();
+        assertThrows(IllegalArgumentException.class, () -> registry.createDeltaExport(Duration.ofSeconds(-1)));
+    }
+
+    private static List<String> lines(DeltaExport export) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count = export.write(out);
+        String text = out.toString(StandardCharsets.UTF_8);
+        List<String> lines = text.isEmpty() ? List.of() : Arrays.asList(text.split("\n"));
+        assertEquals(count, lines.stream().map(DeltaExportTest::metricName).distinct().count());
+        return lines;
+    }
+
+    /**
+     * Name of the metric which a line belongs to.
+     */
+    private static String metricName(String line) {
+        String name = line.substring(0, line.indexOf(' ')).replaceAll("\\{.*", "");
+        return name.replaceAll("_(bucket|sum|count)$", "");
+    }
+
+    private static List<String> sorted(List<String> lines) {
+        return lines.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FloatCounterTest {
+
+    @Test
+    void inc() {
+        final String name = "processed_gigabytes_total{path=\"/foo/bar\"}";
+        FloatCounter counter = new FloatCounter(name);
+
+        counter.inc(0.5);
+        counter.inc(1.25);
+        assertEquals(1.75, counter.get());
+        assertEquals(name, counter.getName());
+    }
+
+    @Test
+    void dec() {
+        FloatCounter counter = new FloatCounter("cost_total");
+
+        counter.inc(2.5);
+        counter.dec(0.5);
+        assertEquals(2.0, counter.get());
+    }
+}
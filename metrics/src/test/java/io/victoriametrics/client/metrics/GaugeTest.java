@@ -2,6 +2,10 @@ package io.victoriametrics.client.metrics;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.DoubleAdder;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,4 +27,74 @@ class GaugeTest {
 
         assertEquals(3.0, actualValue);
     }
+
+    @Test
+    public void longSupplier() {
+        AtomicLong value = new AtomicLong(41);
+        Gauge gauge = new Gauge("gauge", value::incrementAndGet);
+
+        assertEquals(42.0, gauge.get());
+    }
+
+    @Test
+    public void cachedValueIsRefreshedAsynchronously() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        AtomicLong calls = new AtomicLong();
+        Gauge gauge = new Gauge("gauge", () -> calls.incrementAndGet(), Duration.ZERO, tasks::add);
+
+        // the value is unknown until the first refresh completes
+        assertEquals(Double.NaN, gauge.get());
+        assertEquals(1, tasks.size());
+        assertEquals(0, calls.get());
+
+        tasks.poll().run();
+        assertEquals(1.0, gauge.get());
+
+        // only one refresh is in flight, readers get the cached value meanwhile
+        assertEquals(1.0, gauge.get());
+        assertEquals(1, tasks.size());
+
+        tasks.poll().run();
+        assertEquals(2.0, gauge.get());
+    }
+
+    @Test
+    public void cachedValueIsKeptWhenRefreshFails() throws InterruptedException {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        AtomicLong calls = new AtomicLong();
+        Gauge gauge = new Gauge("gauge", () -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("source is down");
+            }
+            return 42;
+        }, Duration.ofMillis(50), tasks::add);
+
+        tasks.poll().run();
+        assertEquals(42.0, gauge.get());
+
+        Thread.sleep(60);
+        assertEquals(42.0, gauge.get());
+        tasks.poll().run();
+        assertEquals(2, calls.get());
+
+        // a failed source isn't retried before max age passes
+        for (int i = 0; i < 3; i++) {
+            assertEquals(42.0, gauge.get());
+        }
+        assertEquals(0, tasks.size());
+
+        Thread.sleep(60);
+        assertEquals(42.0, gauge.get());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void cachedValueIsNotRefreshedBeforeMaxAge() {
+        AtomicLong calls = new AtomicLong();
+        Gauge gauge = new Gauge("gauge", () -> calls.incrementAndGet(), Duration.ofHours(1), Runnable::run);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1.0, gauge.get());
+        }
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistogramBucketsTest {
+
+    @Test
+    public void slotOfMatchesLog10AtSpecialValues() {
+        double[] values = {
+                0.0, -0.0, -1.0, Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                1e-9, 1e18, 1, 10, 60, 100, 1000
+        };
+
+        for (double value : values) {
+            assertSameSlot(value);
+        }
+    }
+
+    @Test
+    public void slotOfMatchesLog10AtBucketBoundaries() {
+        for (int i = 0; i <= HistogramBuckets.BUCKETS_COUNT; i++) {
+            double boundary = Math.pow(10, HistogramBuckets.E_10_MIN + (double) i / HistogramBuckets.BUCKETS_PER_DECIMAL);
+
+            double up = boundary;
+            double down = boundary;
+            for (int ulp = 0; ulp < 64; ulp++) {
+                assertSameSlot(up);
+                assertSameSlot(down);
+                up = Math.nextUp(up);
+                down = Math.nextDown(down);
+            }
+        }
+    }
+
+    @Test
+    public void slotOfMatchesLog10AtRandomValues() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            assertSameSlot(Math.pow(10, random.nextDouble() * 32 - 12));
+            assertSameSlot(Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE));
+        }
+    }
+
+    private static void assertSameSlot(double value) {
+        assertEquals(HistogramBuckets.slotOfLog10(value), HistogramBuckets.slotOf(value), () -> "value " + value);
+    }
+}
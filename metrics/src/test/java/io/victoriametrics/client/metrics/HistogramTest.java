@@ -2,6 +2,11 @@ package io.victoriametrics.client.metrics;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class HistogramTest {
@@ -38,4 +43,138 @@ public class HistogramTest {
         assertEquals("8.799e+17...1.000e+18", histogram.getRange(485));
     }
 
+    @Test
+    public void test_stripedUpdateFromManyThreads() throws InterruptedException {
+        Histogram histogram = new Histogram("response_size", Histogram.Mode.STRIPED);
+        int threadsCount = 8;
+        int updates = 10000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadsCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < updates; j++) {
+                    histogram.update(60);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        histogram.visit((vmrange, count) -> assertEquals(threadsCount * updates, count));
+        assertEquals(60.0 * threadsCount * updates, histogram.getSum());
+
+        histogram.reset();
+        histogram.visit((vmrange, count) -> assertEquals(0, count));
+        assertEquals(0.0, histogram.getSum());
+    }
+
+    @Test
+    public void test_stripedMatchesDense() {
+        Histogram dense = new Histogram("response_size");
+        Histogram striped = new Histogram("response_size", Histogram.Mode.STRIPED);
+        double[] values = {0, 1e-10, 0.5, 1, 10, 60, 1e9, 1e18, 1e19};
+        for (double value : values) {
+            dense.update(value);
+            striped.update(value);
+        }
+
+        assertEquals(buckets(dense), buckets(striped));
+        assertEquals(dense.getSum(), striped.getSum());
+    }
+
+    @Test
+    public void test_sparseMatchesDense() {
+        Histogram dense = new Histogram("response_size");
+        Histogram sparse = new Histogram("response_size", Histogram.Mode.SPARSE);
+        double[] values = {0, 1e-10, 1e-9, 0.5, 1, 10, 60, 60, 1e9, 1e18, 1e19};
+        for (double value : values) {
+            dense.update(value);
+            sparse.update(value);
+        }
+
+        assertEquals(buckets(dense), buckets(sparse));
+        assertEquals(dense.getSum(), sparse.getSum());
+
+        sparse.reset();
+        assertEquals(0, sparse.snapshot().getCount());
+        assertEquals(0.0, sparse.getSum());
+    }
+
+    @Test
+    public void test_bulkUpdate() {
+        double[] values = {-1, 0.5, 60, 60, 1000, 1e19};
+        Histogram single = new Histogram("response_size");
+        for (double value : values) {
+            single.update(value);
+        }
+
+        for (Histogram.Mode mode : Histogram.Mode.values()) {
+            Histogram bulk = new Histogram("response_size", mode);
+            bulk.update(new double[]{42, -1, 0.5, 60, 60, 1000, 1e19, 42}, 1, values.length);
+
+            assertEquals(buckets(single), buckets(bulk));
+            assertEquals(single.getSum(), bulk.getSum());
+        }
+    }
+
+    @Test
+    public void test_weightedUpdate() {
+        for (Histogram.Mode mode : Histogram.Mode.values()) {
+            Histogram histogram = new Histogram("response_size", mode);
+            histogram.update(60, 5);
+            histogram.update(-60, 5);
+            histogram.update(60, 0);
+
+            histogram.visit((vmrange, count) -> assertEquals(5, count));
+            assertEquals(300.0, histogram.getSum());
+        }
+    }
+
+    @Test
+    public void test_snapshot() {
+        Histogram histogram = new Histogram("response_size");
+        histogram.update(60);
+        histogram.update(60);
+        histogram.update(1000);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        histogram.update(1000);
+
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        snapshot.visit(buckets::put);
+
+        assertEquals(2, buckets.size());
+        assertEquals(3, snapshot.getCount());
+        assertEquals(1120.0, snapshot.getSum());
+        assertEquals(2120.0, histogram.getSum());
+    }
+
+    @Test
+    public void test_snapshotAndReset() {
+        for (Histogram.Mode mode : Histogram.Mode.values()) {
+            Histogram histogram = new Histogram("response_size", mode);
+            histogram.update(60);
+            histogram.update(1000);
+
+            Histogram.Snapshot snapshot = histogram.snapshotAndReset();
+            assertEquals(2, snapshot.getCount());
+            assertEquals(1060.0, snapshot.getSum());
+
+            histogram.update(60);
+
+            snapshot = histogram.snapshotAndReset();
+            assertEquals(1, snapshot.getCount());
+            assertEquals(60.0, snapshot.getSum());
+            assertEquals(0, histogram.snapshot().getCount());
+        }
+    }
+
+    private static Map<String, Long> buckets(Histogram histogram) {
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        histogram.visit(buckets::put);
+        return buckets;
+    }
 }
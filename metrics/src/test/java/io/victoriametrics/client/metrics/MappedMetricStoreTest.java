@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedMetricStoreTest {
+
+    private static final int SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void keepValuesAfterReopen() throws IOException {
+        Path file = directory.resolve("metrics.bin");
+
+        String expected;
+        try (MappedMetricStore store = MappedMetricStore.open(file, SIZE)) {
+            MetricRegistry registry = MetricRegistry.create();
+            Counter counter = registry.createCounter().withStore(store).name("requests_total")
+                                      .addLabel("path", "/foo").register();
+            Histogram histogram = registry.createHistogram().withStore(store).name("duration_seconds").register();
+            counter.inc(5);
+            counter.dec();
+            histogram.update(0.5);
+            histogram.update(2, 3);
+            histogram.update(new double[]{1, 10}, 0, 2);
+            expected = write(registry);
+        }
+
+        try (MappedMetricStore store = MappedMetricStore.open(file, SIZE)) {
+            MetricRegistry registry = MetricRegistry.create();
+            Counter counter = registry.createCounter().withStore(store).name("requests_total")
+                                      .addLabel("path", "/foo").register();
+            Histogram histogram = registry.createHistogram().withStore(store).name("duration_seconds").register();
+            assertEquals(4, counter.get());
+            assertEquals(6, histogram.snapshot().getCount());
+            assertEquals(17.5, histogram.getSum());
+            assertEquals(sorted(expected), sorted(write(registry)));
+
+            counter.inc();
+            assertEquals(5, counter.get());
+        }
+    }
+
+    @Test
+    public void createMetricsByNameAndFamily() throws IOException {
+        Path file = directory.resolve("metrics.bin");
+        try (MappedMetricStore store = MappedMetricStore.open(file, SIZE)) {
+            MetricRegistry registry = MetricRegistry.create();
+            registry.getOrCreateCounter("requests_total{path=\"/foo\", method=\"GET\"}", store).inc(3);
+            registry.getOrCreateHistogram("duration_seconds", store).update(0.5);
+            registry.createFamily("errors_total", store::counter, "path").labels("/foo").inc(2);
+        }
+
+        try (MappedMetricStore store = MappedMetricStore.open(file, SIZE);
+             MappedMetricReader reader = MappedMetricReader.open(file)) {
+            MetricRegistry registry = MetricRegistry.create();
+            // names which differ only in separators share a record
+            assertEquals(3, registry.getOrCreateCounter("requests_total{path=\"/foo\",method=\"GET\"}", store).get());
+            assertEquals(1, registry.getOrCreateHistogram("duration_seconds", store).snapshot().getCount());
+            assertEquals(2, registry.createCounter().withStore(store).name("errors_total")
+                                    .addLabel("path", "/foo").register().get());
+            assertEquals(List.of("errors_total{path=\"/foo\"} 2", "requests_total{path=\"/foo\",method=\"GET\"} 3"),
+                    sorted(read(reader)).stream().filter(line -> !line.startsWith("duration_seconds")).toList());
+        }
+    }
+
+    @Test
+    public void readStoreOfAnotherWriter() throws IOException {
+        Path file = directory.resolve("metrics.bin");
+        try (MappedMetricStore store = MappedMetricStore.open(file, SIZE);
+             MappedMetricReader reader = MappedMetricReader.open(file)) {
+            MetricRegistry registry = MetricRegistry.create();
+            Counter counter = registry.createCounter().withStore(store).name("foo").register();
+            counter.inc();
+            assertEquals("foo 1\n", read(reader));
+
+            counter.inc();
+            Histogram histogram = registry.createHistogram().withStore(store).name("bar").addLabel("a", "b").register();
+            histogram.update(1);
+            assertEquals(sorted(write(registry)), sorted(read(reader)));
+
+            StringWriter writer = new StringWriter();
+            reader.write(writer);
+            assertEquals(sorted(write(registry)), sorted(writer.toString()));
+        }
+    }
+
+    @Test
+    public void countConcurrentUpdates() throws Exception {
+        try (MappedMetricStore store = MappedMetricStore.open(directory.resolve("metrics.bin"), SIZE)) {
+            MetricRegistry registry = MetricRegistry.create();
+            Counter counter = registry.createCounter().withStore(store).name("foo").register();
+            Histogram histogram = registry.createHistogram().withStore(store).name("bar").register();
+
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        counter.inc();
+                        histogram.update(1);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(40_000, counter.get());
+            assertEquals(40_000, histogram.snapshot().getCount());
+            assertEquals(40_000.0, histogram.getSum());
+        }
+    }
+
+    @Test
+    public void rejectConflictingTypes() throws IOException {
+        try (MappedMetricStore store = MappedMetricStore.open(directory.resolve("metrics.bin"), SIZE)) {
+            MetricRegistry.create().createCounter().withStore(store).name("foo").register();
+            assertThrows(IllegalArgumentException.class,
+                    () -> MetricRegistry.create().createHistogram().withStore(store).name("foo").register());
+        }
+    }
+
+    @Test
+    public void rejectRecordsWhenFull() throws IOException {
+        try (MappedMetricStore store = MappedMetricStore.open(directory.resolve("metrics.bin"), 96)) {
+            MetricRegistry registry = MetricRegistry.create();
+            registry.createCounter().withStore(store).name("foo").register();
+            assertThrows(IllegalStateException.class,
+                    () -> registry.createCounter().withStore(store).name("bar").register());
+        }
+    }
+
+    @Test
+    public void rejectSecondWriter() throws IOException {
+        Path file = directory.resolve("metrics.bin");
+        try (MappedMetricStore ignored = MappedMetricStore.open(file, SIZE)) {
+            assertThrows(IOException.class, () -> MappedMetricStore.open(file, SIZE));
+        }
+    }
+
+    @Test
+    public void rejectUnsupportedFiles() throws IOException {
+        Path other = directory.resolve("other.bin");
+        Files.write(other, new byte[256]);
+        assertThrows(IOException.class, () -> MappedMetricStore.open(other, SIZE));
+        assertThrows(IOException.class, () -> MappedMetricReader.open(other));
+
+        Path file = directory.resolve("metrics.bin");
+        MappedMetricStore.open(file, SIZE).close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 2);
+            channel.write(version, MappedMetricStore.VERSION_OFFSET);
+        }
+        IOException e = assertThrows(IOException.class, () -> MappedMetricStore.open(file, SIZE));
+        assertEquals("Unsupported version 2 of metric store " + file, e.getMessage());
+    }
+
+    private static String write(MetricRegistry registry) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.write(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String read(MappedMetricReader reader) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.write(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> sorted(String text) {
+        return Arrays.stream(text.split("\n")).sorted().toList();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import io.victoriametrics.client.validator.InvalidMetricNameException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricFamilyTest {
+
+    @Test
+    public void childrenAreRegistered() {
+        MetricRegistry registry = MetricRegistry.create();
+        MetricFamily<Counter> family = registry.createCounterFamily("requests_total", "method", "path");
+
+        Counter counter = family.labels("GET", "/api");
+        counter.inc();
+
+        assertSame(counter, family.labels("GET", "/api"));
+        assertSame(counter, family.labels(new String[]{"GET", "/api"}));
+        assertSame(counter, registry.getOrCreateCounter("requests_total{method=\"GET\", path=\"/api\"}"));
+        assertNotSame(counter, family.labels("POST", "/api"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void labelValuesAreEscaped() {
+        MetricRegistry registry = MetricRegistry.create();
+        MetricFamily<SettableGauge> family = registry.createSettableGaugeFamily("temperature", "room");
+
+        assertEquals("temperature{room=\"a \\\"b\\\" \\\\c\"}", family.labels("a \"b\" \\c").getName());
+    }
+
+    @Test
+    public void manyChildren() {
+        MetricRegistry registry = MetricRegistry.create();
+        MetricFamily<Histogram> family = registry.createHistogramFamily("latency_seconds", "a", "b", "c");
+
+        List<Histogram> children = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            children.add(family.labels("a" + i, "b" + (i % 7), "c"));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertSame(children.get(i), family.labels("a" + i, "b" + (i % 7), "c"));
+        }
+        assertEquals(1000, registry.size());
+    }
+
+    @Test
+    public void summaryFamily() {
+        MetricRegistry registry = MetricRegistry.create();
+        MetricFamily<Summary> family = registry.createSummaryFamily("response_size_bytes", "path");
+
+        family.labels("/api").update(10);
+        assertEquals("response_size_bytes{path=\"/api\"}", family.labels("/api").getName());
+        assertEquals(1, family.labels("/api").getCount());
+    }
+
+    @Test
+    public void invalidFamilies() {
+        MetricRegistry registry = MetricRegistry.create();
+
+        assertThrows(InvalidMetricNameException.class, () -> registry.createCounterFamily("foo-bar", "a"));
+        assertThrows(InvalidMetricNameException.class, () -> registry.createCounterFamily("foo", "a-b"));
+        assertThrows(IllegalArgumentException.class, () -> registry.createCounterFamily("foo{a=\"b\"}", "c"));
+        assertThrows(IllegalArgumentException.class, () -> registry.createCounterFamily("foo", "a", "a"));
+        assertThrows(IllegalArgumentException.class, () -> registry.createCounterFamily("foo"));
+
+        MetricFamily<Counter> family = registry.createCounterFamily("foo", "a", "b");
+        assertThrows(IllegalArgumentException.class, () -> family.labels("x"));
+        assertThrows(IllegalArgumentException.class, () -> family.labels("x", "y", "z"));
+        assertEquals(0, registry.size());
+    }
+}
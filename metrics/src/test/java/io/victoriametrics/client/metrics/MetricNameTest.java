@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import io.victoriametrics.client.validator.InvalidMetricNameException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricNameTest {
+
+    @Test
+    public void parse() {
+        MetricName name = MetricName.parse("requests_total{method=\"GET\",path=\"/a\\\"b\"}");
+
+        assertEquals("requests_total", name.getName());
+        assertEquals(2, name.getLabelsCount());
+        assertEquals("method", name.getLabelName(0));
+        assertEquals("GET", name.getLabelValue(0));
+        assertEquals("path", name.getLabelName(1));
+        assertEquals("/a\\\"b", name.getLabelValue(1));
+        assertEquals("/a\"b", name.getUnescapedLabelValue(1));
+        assertEquals("requests_total{method=\"GET\",path=\"/a\\\"b\"}", name.toString());
+
+        assertEquals("foo", MetricName.parse("foo").toString());
+        assertEquals("foo", MetricName.parse("foo{}").toString());
+        assertThrows(InvalidMetricNameException.class, () -> MetricName.parse("foo{bar}"));
+    }
+
+    @Test
+    public void partsAreInterned() {
+        MetricName first = MetricName.parse("requests_total{instance=\"" + "host-1" + "\"}");
+        MetricName second = MetricName.parse(new String("errors_total{instance=\"host-1\"}"));
+
+        assertSame(first.getLabelName(0), second.getLabelName(0));
+        assertSame(first.getLabelValue(0), second.getLabelValue(0));
+    }
+
+    @Test
+    public void equality() {
+        MetricName parsed = MetricName.parse("foo{a=\"b\",c=\"d\"}");
+        MetricName built = MetricName.of("foo", new String[]{"a", "c"}, new String[]{"b", "d"});
+
+        assertEquals(parsed, built);
+        assertEquals(parsed.hashCode(), built.hashCode());
+        assertNotEquals(parsed, MetricName.parse("foo{c=\"d\", a=\"b\"}"));
+        assertEquals("foo{a=\"x\\\\y\\n\"}", MetricName.of("foo", new String[]{"a"}, new String[]{"x\\y\n"}).toString());
+    }
+
+    @Test
+    public void registryKeysAreParsed() {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter counter = registry.getOrCreateCounter("foo{a=\"b\",c=\"d\"}");
+
+        assertSame(counter, registry.getOrCreateCounter("foo{a=\"b\", c=\"d\"}"));
+        assertSame(counter, registry.createCounter().name("foo").addLabel("a", "b").addLabel("c", "d").register());
+        assertEquals(1, registry.size());
+        assertEquals("foo{a=\"b\",c=\"d\"}", counter.getName());
+    }
+
+    @Test
+    public void keepLabelSeparator() {
+        assertEquals("foo{a=\"b\",c=\"d\"}", MetricName.parse("foo{a=\"b\",c=\"d\"}").toString());
+        assertEquals("foo{a=\"b\", c=\"d\"}", MetricName.parse("foo{a=\"b\", c=\"d\"}").toString());
+        assertEquals("foo{a=\"b\", c=\"d\"}", MetricName.parse("foo{ a=\"b\" ,  c=\"d\" }").toString());
+        assertEquals("foo{a=\"b\", c=\"d\"}",
+                MetricName.of("foo", new String[]{"a", "c"}, new String[]{"b", "d"}).toString());
+
+        MetricRegistry registry = MetricRegistry.create();
+        registry.getOrCreateCounter("requests_total{path=\"/api\",method=\"GET\"}").inc();
+        registry.getOrCreateSummary("duration_seconds{path=\"/api\",method=\"GET\"}").update(1);
+        registry.getOrCreateHistogram("latency_seconds{path=\"/api\", method=\"GET\"}").update(0.5);
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        String output = writer.toString();
+
+        assertTrue(output.contains("requests_total{path=\"/api\",method=\"GET\"} 1\n"), output);
+        assertTrue(output.contains("duration_seconds{path=\"/api\",method=\"GET\",quantile=\"0.5\"} 1.0\n"), output);
+        assertTrue(output.contains("duration_seconds_count{path=\"/api\",method=\"GET\"} 1.0\n"), output);
+        assertTrue(output.contains("latency_seconds_sum{path=\"/api\", method=\"GET\"} 0.5\n"), output);
+        assertTrue(output.contains(
+                "latency_seconds_bucket{path=\"/api\", method=\"GET\",vmrange=\"4.642e-01...5.275e-01\"} 1.0\n"), output);
+    }
+
+    @Test
+    public void serializeLabels() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.getOrCreateHistogram("latency_seconds{path=\"/api\"}").update(0.5);
+        registry.getOrCreateCounter("requests_total{path=\"/api\", method=\"GET\"}").inc();
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        String output = writer.toString();
+
+        assertTrue(output.contains("latency_seconds_bucket{path=\"/api\",vmrange=\"4.642e-01...5.275e-01\"} 1.0\n"), output);
+        assertTrue(output.contains("latency_seconds_sum{path=\"/api\"} 0.5\n"), output);
+        assertTrue(output.contains("latency_seconds_count{path=\"/api\"} 1.0\n"), output);
+        assertTrue(output.contains("requests_total{path=\"/api\", method=\"GET\"} 1\n"), output);
+    }
+}
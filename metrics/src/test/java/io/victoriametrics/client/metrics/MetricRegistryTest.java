@@ -3,8 +3,21 @@ package io.victoriametrics.client.metrics;
 import io.victoriametrics.client.validator.InvalidMetricNameException;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MetricRegistryTest {
 
@@ -74,6 +87,164 @@ class MetricRegistryTest {
         assertEquals("foo{bar=\"value1\", baz=\"value2\"}", histogram.getName());
     }
 
+    @Test
+    public void createSettableMetricsByName() {
+        MetricRegistry collection = MetricRegistry.create();
+        FloatCounter counter = collection.getOrCreateFloatCounter("bytes_total");
+        SettableGauge gauge = collection.getOrCreateSettableGauge("temperature{room=\"a\"}");
+        counter.inc(1.5);
+        gauge.set(-2.5);
+
+        assertSame(counter, collection.createFloatCounter().name("bytes_total").register());
+        assertSame(gauge, collection.createSettableGauge().name("temperature").addLabel("room", "a").register());
+
+        StringWriter writer = new StringWriter();
+        collection.write(writer);
+        assertTrue(writer.toString().contains("bytes_total 1.5\n"));
+        assertTrue(writer.toString().contains("temperature{room=\"a\"} -2.5\n"));
+    }
+
+    @Test
+    public void writeSummary() {
+        MetricRegistry collection = MetricRegistry.create();
+        Summary summary = collection.getOrCreateSummary("size{path=\"/a\"}", new double[]{0.5, 1.0}, 2,
+                Duration.ofMinutes(1));
+        summary.update(3);
+        collection.getOrCreateSummary("empty", new double[]{0.5}, 2, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 2; i++) {
+            StringWriter writer = new StringWriter();
+            collection.write(writer);
+            String output = writer.toString();
+
+            assertTrue(output.contains("size{path=\"/a\",quantile=\"0.5\"} 3.0\n"), output);
+            assertTrue(output.contains("size{path=\"/a\",quantile=\"1.0\"} 3.0\n"), output);
+            assertTrue(output.contains("size_sum{path=\"/a\"} 3.0\n"), output);
+            assertTrue(output.contains("size_count{path=\"/a\"} 1.0\n"), output);
+            assertTrue(output.contains("empty{quantile=\"0.5\"} NaN\n"), output);
+        }
+    }
+
+    @Test
+    public void writeToOutputStream() {
+        MetricRegistry collection = MetricRegistry.create();
+        collection.getOrCreateCounter("requests_total{path=\"/a\"}").inc(42);
+        collection.getOrCreateFloatCounter("bytes_total").inc(1.5);
+        collection.getOrCreateGauge("ratio", () -> 0.1 + 0.2);
+        collection.getOrCreateSettableGauge("temperature{room=\"кухня\"}").set(-12.25);
+        Histogram histogram = collection.getOrCreateHistogram("latency_seconds{path=\"/a\"}");
+        histogram.update(0.5);
+        histogram.update(0.5);
+        histogram.update(1e-12);
+        histogram.update(1e20);
+        histogram.update(3.7);
+        Summary summary = collection.getOrCreateSummary("size", new double[]{0.5, 0.99}, 2, Duration.ofMinutes(1));
+        summary.update(3);
+        collection.getOrCreateSummary("empty", new double[]{0.5}, 2, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 2; i++) {
+            StringWriter writer = new StringWriter();
+            collection.write(writer);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            collection.write(out);
+
+            assertEquals(writer.toString(), out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void writeParallel() {
+        MetricRegistry collection = MetricRegistry.create();
+        for (int i = 0; i < 50_000; i++) {
+            collection.getOrCreateCounter("requests_total{path=\"/api/" + i + "\"}").inc(i);
+            if (i % 100 == 0) {
+                collection.getOrCreateHistogram("latency_seconds{path=\"/api/" + i + "\"}").update(i / 1000.0);
+            }
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        collection.write(expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream common = new ByteArrayOutputStream();
+                collection.writeParallel(common);
+                assertArrayEquals(expected.toByteArray(), common.toByteArray());
+
+                ByteArrayOutputStream custom = new ByteArrayOutputStream();
+                collection.writeParallel(custom, executor);
+                assertArrayEquals(expected.toByteArray(), custom.toByteArray());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getOrCreateManyNames() {
+        MetricRegistry collection = MetricRegistry.create();
+        Counter[] counters = new Counter[5000];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = collection.getOrCreateCounter("requests_total{method=\"GET\", path=\"/" + i + "\"}");
+        }
+        Counter built = collection.createCounter().name("built_total").addLabel("a", "b").register();
+
+        for (int i = 0; i < counters.length; i++) {
+            assertSame(counters[i], collection.getOrCreateCounter("requests_total{method=\"GET\", path=\"/" + i + "\"}"));
+            assertSame(counters[i], collection.getOrCreateCounter("requests_total{method=\"GET\",path=\"/" + i + "\"}"));
+        }
+        assertSame(built, collection.getOrCreateCounter("built_total{a=\"b\"}"));
+        assertEquals(counters.length + 1, collection.size());
+    }
+
+    @Test
+    public void writeParallelShards() {
+        MetricRegistry collection = MetricRegistry.create();
+        for (int i = 0; i < 101; i++) {
+            collection.getOrCreateCounter("requests_total{path=\"/api/" + i + "\"}").inc(i);
+            collection.getOrCreateGauge("temperature{room=\"" + i + "\"}", () -> Double.POSITIVE_INFINITY);
+            collection.getOrCreateSummary("duration_seconds{path=\"/api/" + i + "\"}").update(i);
+            collection.getOrCreateHistogram("latency_seconds{path=\"/api/" + i + "\"}").update(i / 1000.0);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        collection.write(expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // shard counts which don't divide the registry evenly, growing and shrinking the reused buffers
+            for (int parallelism : new int[]{1, 2, 7, 3, 101, 1}) {
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                collection.writeParallel(actual, executor, parallelism, 1);
+                assertArrayEquals(expected.toByteArray(), actual.toByteArray(), "parallelism " + parallelism);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void writeParallelDropsLargeShardBuffers() {
+        MetricRegistry collection = MetricRegistry.create();
+        collection.getOrCreateCounter("large{value=\"" + "x".repeat(MetricRegistry.MAX_IDLE_SHARD_BUFFER_SIZE) + "\"}");
+        for (int i = 0; i < 3; i++) {
+            collection.getOrCreateCounter("small{value=\"" + i + "\"}");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            collection.writeParallel(OutputStream.nullOutputStream(), executor, 1, 1);
+        } finally {
+            executor.shutdown();
+        }
+
+        // only the buffer of the shard with the large series is released
+        ByteArrayOutputStream[] buffers = collection.getIdleShardBuffers();
+        assertEquals(4, buffers.length);
+        assertEquals(1, Arrays.stream(buffers).filter(Objects::isNull).count());
+    }
+
     @Test
     public void createMetricWithInvalidName_thenThrowException() {
         MetricRegistry collection = MetricRegistry.create();
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricVisitorTest {
+
+    @Test
+    void visitNewTypesAsGauges() {
+        FloatCounter counter = new FloatCounter("cost_total{currency=\"EUR\"}");
+        counter.inc(1.5);
+        SettableGauge gauge = new SettableGauge("temperature");
+        gauge.set(21.5);
+
+        // a visitor which predates FloatCounter and SettableGauge
+        List<String> visited = new ArrayList<>();
+        MetricVisitor visitor = new MetricVisitor() {
+            @Override
+            public void visit(Counter counter) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void visit(Gauge gauge) {
+                visited.add(gauge.getName() + " " + gauge.get());
+            }
+
+            @Override
+            public void visit(Histogram histogram) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void visit(Summary summary) {
+                throw new AssertionError();
+            }
+        };
+
+        counter.accept(visitor);
+        gauge.accept(visitor);
+        assertEquals(List.of("cost_total{currency=\"EUR\"} 1.5", "temperature 21.5"), visited);
+    }
+}
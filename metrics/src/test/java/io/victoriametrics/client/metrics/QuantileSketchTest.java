@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    public void emptySketch() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        assertEquals(Double.NaN, sketch.quantile(0.5));
+    }
+
+    @Test
+    public void singlePassMatchesQuantile() {
+        Random random = new Random(7);
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        double[] phis = {0.0, 0.1, 0.5, 0.5, 0.9, 0.99, 1.0};
+        double[] values = new double[phis.length];
+
+        sketch.quantiles(phis, values);
+        for (double value : values) {
+            assertEquals(Double.NaN, value);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(random.nextGaussian() * 100);
+        }
+        sketch.add(0.0, 50);
+
+        sketch.quantiles(phis, values);
+        for (int i = 0; i < phis.length; i++) {
+            assertEquals(sketch.quantile(phis[i]), values[i], "phi " + phis[i]);
+        }
+    }
+
+    @Test
+    public void quantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[100_000];
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 3);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double phi : new double[]{0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            double expected = values[(int) (phi * (values.length - 1))];
+            assertEquals(expected, sketch.quantile(phi), expected * ACCURACY, "phi " + phi);
+        }
+    }
+
+    @Test
+    public void negativeAndZeroValues() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = -100; i <= 100; i++) {
+            sketch.add(i);
+        }
+
+        assertEquals(-100.0, sketch.quantile(0.0));
+        assertEquals(-50.0, sketch.quantile(0.25), 50 * ACCURACY);
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertEquals(50.0, sketch.quantile(0.75), 50 * ACCURACY);
+        assertEquals(100.0, sketch.quantile(1.0));
+    }
+
+    @Test
+    public void mergeEqualsSingleSketch() {
+        QuantileSketch single = new QuantileSketch(ACCURACY);
+        QuantileSketch first = new QuantileSketch(ACCURACY);
+        QuantileSketch second = new QuantileSketch(ACCURACY);
+        for (int i = 1; i <= 1000; i++) {
+            single.add(i);
+            (i % 2 == 0 ? first : second).add(i);
+        }
+
+        first.merge(second);
+        assertEquals(single.getCount(), first.getCount());
+        for (double phi : new double[]{0.0, 0.5, 0.9, 0.99, 1.0}) {
+            assertEquals(single.quantile(phi), first.quantile(phi));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new QuantileSketch(0.05)));
+    }
+
+    @Test
+    public void memoryIsBounded() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 128);
+        for (int i = -300; i <= 300; i++) {
+            sketch.add(Math.pow(10, i), 2);
+        }
+
+        assertEquals(1202, sketch.getCount());
+        assertEquals(1e300, sketch.quantile(0.9995), 1e300 * ACCURACY);
+        assertEquals(1e299, sketch.quantile(0.999), 1e299 * ACCURACY);
+        assertEquals(1e300, sketch.quantile(1.0));
+    }
+
+    @Test
+    public void weightedAndCleared() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(1, 10);
+        sketch.add(100, 10);
+
+        assertEquals(20, sketch.getCount());
+        assertEquals(1.0, sketch.quantile(0.4), ACCURACY);
+        assertEquals(100.0, sketch.quantile(0.6), 100 * ACCURACY);
+
+        sketch.clear();
+        assertEquals(0, sketch.getCount());
+        assertEquals(Double.NaN, sketch.quantile(0.5));
+
+        sketch.add(5);
+        assertEquals(5.0, sketch.quantile(0.5));
+    }
+
+    @Test
+    public void countInfinities() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 128);
+        sketch.add(1.0);
+        sketch.add(Double.POSITIVE_INFINITY);
+        sketch.add(Double.NEGATIVE_INFINITY, 2);
+        for (int i = 2; i <= 5; i++) {
+            sketch.add(i);
+        }
+
+        assertEquals(8, sketch.getCount());
+        assertEquals(Double.NEGATIVE_INFINITY, sketch.quantile(0.0));
+        assertEquals(Double.NEGATIVE_INFINITY, sketch.quantile(0.1));
+        assertEquals(3.0, sketch.quantile(0.6), 3 * ACCURACY);
+        assertEquals(5.0, sketch.quantile(0.99), 5 * ACCURACY);
+        assertEquals(Double.POSITIVE_INFINITY, sketch.quantile(1.0));
+
+        double[] values = new double[3];
+        sketch.quantiles(new double[]{0.1, 0.6, 1.0}, values);
+        assertEquals(Double.NEGATIVE_INFINITY, values[0]);
+        assertEquals(3.0, values[1], 3 * ACCURACY);
+        assertEquals(Double.POSITIVE_INFINITY, values[2]);
+
+        QuantileSketch merged = new QuantileSketch(ACCURACY, 128);
+        merged.merge(sketch);
+        assertEquals(Double.NEGATIVE_INFINITY, merged.quantile(0.1));
+        assertEquals(Double.POSITIVE_INFINITY, merged.quantile(1.0));
+    }
+}
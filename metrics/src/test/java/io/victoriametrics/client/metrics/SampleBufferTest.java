@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SampleBufferTest {
+
+    @Test
+    public void drainReturnsAllSamples() {
+        SampleBuffer buffer = new SampleBuffer();
+        int total = SampleBuffer.CHUNK_SIZE * 3 + 10;
+        for (int i = 0; i < total; i++) {
+            buffer.add(1);
+        }
+
+        double[] sum = {0};
+        buffer.drain((values, off, len) -> {
+            for (int i = off; i < off + len; i++) {
+                sum[0] += values[i];
+            }
+        });
+        assertEquals(total, sum[0]);
+
+        sum[0] = 0;
+        buffer.drain((values, off, len) -> sum[0] += len);
+        assertEquals(0, sum[0]);
+    }
+
+    @Test
+    public void concurrentWritersAndReader() throws InterruptedException {
+        SampleBuffer buffer = new SampleBuffer();
+        int threadsCount = 8;
+        int updates = 100_000;
+
+        long[] drained = {0};
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                buffer.drain((values, off, len) -> drained[0] += len);
+            }
+        });
+        reader.start();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < threadsCount; i++) {
+            Thread writer = new Thread(() -> {
+                for (int j = 0; j < updates; j++) {
+                    buffer.add(j);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        running.set(false);
+        reader.join();
+        buffer.drain((values, off, len) -> drained[0] += len);
+
+        assertEquals((long) threadsCount * updates, drained[0]);
+    }
+}
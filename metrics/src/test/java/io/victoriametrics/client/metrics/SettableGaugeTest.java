@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SettableGaugeTest {
+
+    @Test
+    void set() {
+        SettableGauge gauge = new SettableGauge("queue_size");
+        assertEquals(0.0, gauge.get());
+
+        gauge.set(12.5);
+        assertEquals(12.5, gauge.get());
+    }
+
+    @Test
+    void add() {
+        SettableGauge gauge = new SettableGauge("queue_size");
+
+        gauge.add(1.5);
+        gauge.add(-0.5);
+        assertEquals(1.0, gauge.get());
+    }
+
+    @Test
+    void setMax() {
+        SettableGauge gauge = new SettableGauge("max_latency_seconds");
+
+        gauge.setMax(0.25);
+        gauge.setMax(0.1);
+        assertEquals(0.25, gauge.get());
+
+        gauge.setMax(1.5);
+        assertEquals(1.5, gauge.get());
+    }
+
+    @Test
+    void concurrentAdd() throws InterruptedException {
+        SettableGauge gauge = new SettableGauge("queue_size");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    gauge.add(0.5);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20000.0, gauge.get());
+    }
+}
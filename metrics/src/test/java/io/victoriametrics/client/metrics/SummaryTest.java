@@ -7,8 +7,16 @@ package io.victoriametrics.client.metrics;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Valery Kantor
@@ -35,6 +43,274 @@ public class SummaryTest {
         assertEquals(total * 1.0 - 1, summary.getQuantile(1.0));
     }
 
+    @Test
+    public void testSummaryBulk() {
+        final Summary summary = MetricRegistry.create().getOrCreateSummary("TestBulk");
+
+        int total = 2000;
+        double[] values = new double[total + 2];
+        double sum = 0;
+        for (int i = 0; i < total; i++) {
+            values[i + 1] = i;
+            sum += i;
+        }
+        summary.update(values, 1, total);
+
+        assertEquals(total, summary.getCount());
+        assertEquals(sum, summary.getSum());
+
+        assertEquals(total * 0.5, summary.getQuantile(0.5));
+        assertEquals(total * 0.9, summary.getQuantile(0.9));
+        assertEquals(total * 1.0 - 1, summary.getQuantile(1.0));
+    }
+
+    @Test
+    public void testSummaryWeighted() {
+        final Summary summary = MetricRegistry.create().getOrCreateSummary("TestWeighted");
+
+        summary.update(1, 10);
+        summary.update(100, 10);
+
+        assertEquals(20, summary.getCount());
+        assertEquals(1010.0, summary.getSum());
+
+        assertEquals(1.0, summary.getQuantile(0.0));
+        assertEquals(100.0, summary.getQuantile(0.5));
+        assertEquals(100.0, summary.getQuantile(1.0));
+    }
+
+    @Test
+    public void testSummaryWeightedLargeCount() {
+        final Summary summary = MetricRegistry.create().getOrCreateSummary("TestWeightedLarge");
+
+        summary.update(5, 3_000_000_000L);
+        summary.update(1, 1_000_000_000L);
+        summary.update(5, 1_000_000_000L);
+        for (int i = 0; i < 100; i++) {
+            summary.update(10 + i);
+        }
+
+        assertEquals(5_000_000_100L, summary.getCount());
+        assertEquals(2.1000005950E10, summary.getSum());
+
+        assertEquals(1.0, summary.getQuantile(0.0));
+        assertEquals(1.0, summary.getQuantile(0.19));
+        assertEquals(5.0, summary.getQuantile(0.5));
+        assertEquals(5.0, summary.getQuantile(0.99));
+        assertEquals(109.0, summary.getQuantile(1.0));
+        assertEquals(Map.of(0.5, 5.0, 0.9, 5.0, 0.97, 5.0, 0.99, 5.0, 1.0, 109.0), summary.getQuantileValues());
+    }
+
+    @Test
+    public void testSummaryWeightedMixed() {
+        final Summary summary = MetricRegistry.create().getOrCreateSummary("TestWeightedMixed");
+        for (int i = 0; i < 10; i++) {
+            summary.update(i * 10);
+            summary.update(i * 10 + 5, 9);
+        }
+
+        // 0 x1, 5 x9, 10 x1, 15 x9, ...
+        assertEquals(100, summary.getCount());
+        assertEquals(0.0, summary.getQuantile(0.0));
+        assertEquals(5.0, summary.getQuantile(0.05));
+        assertEquals(10.0, summary.getQuantile(0.1));
+        assertEquals(50.0, summary.getQuantile(0.5));
+        assertEquals(95.0, summary.getQuantile(0.97));
+        assertEquals(Map.of(0.5, 50.0, 0.9, 90.0, 0.97, 95.0, 0.99, 95.0, 1.0, 95.0), summary.getQuantileValues());
+    }
+
+    @Test
+    public void testSummarySnapshot() {
+        double[] quantiles = new double[]{0.9, 0.5};
+        Summary summary = MetricRegistry.create().getOrCreateSummary("TestSnapshot", quantiles, 2, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            summary.update(i);
+        }
+
+        Summary.Snapshot snapshot = summary.snapshot();
+        summary.update(1000);
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(4950.0, snapshot.getSum());
+
+        List<Double> visited = new ArrayList<>();
+        snapshot.visit((quantile, value) -> {
+            visited.add(quantile);
+            visited.add(value);
+        });
+        assertEquals(List.of(0.5, 50.0, 0.9, 90.0), visited);
+    }
+
+    @Test
+    public void testSummaryQuantileValues() {
+        double[] quantiles = new double[]{0.5, 0.9, 1.0};
+        Summary summary = MetricRegistry.create().getOrCreateSummary("TestQuantileValues", quantiles, 2, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            summary.update(99 - i);
+        }
+
+        SortedMap<Double, Double> values = summary.getQuantileValues();
+        assertEquals(Map.of(0.5, 50.0, 0.9, 90.0, 1.0, 99.0), values);
+        assertEquals(values, summary.getQuantileValues());
+
+        // cached values are dropped on update
+        summary.update(1000);
+        assertEquals(1000.0, summary.getQuantileValues().get(1.0));
+
+        Summary.TimeWindowQuantile quantile = summary.timeWindowQuantile;
+        quantile.lastRotationNs -= quantile.rotateEachNs;
+        assertEquals(Double.NaN, summary.getQuantileValues().get(0.5));
+    }
+
+    @Test
+    public void testSummarySketch() {
+        final double accuracy = 0.01;
+        final Summary summary = MetricRegistry.create().createSummary()
+                                              .withRelativeAccuracy(accuracy)
+                                              .name("TestSketch")
+                                              .register();
+
+        int total = 100000;
+        for (int i = 1; i <= total; i++) {
+            summary.update(i);
+        }
+
+        assertEquals(total, summary.getCount());
+        assertEquals(total * 0.5, summary.getQuantile(0.5), total * 0.5 * accuracy);
+        assertEquals(total * 0.9, summary.getQuantile(0.9), total * 0.9 * accuracy);
+        assertEquals(total * 0.99, summary.getQuantile(0.99), total * 0.99 * accuracy);
+        assertEquals(total, summary.getQuantile(1.0));
+    }
+
+    @Test
+    public void testSummarySketchInfinities() {
+        final Summary summary = MetricRegistry.create().createSummary()
+                                              .withRelativeAccuracy(0.01)
+                                              .name("TestSketchInfinities")
+                                              .register();
+
+        summary.update(1.0);
+        summary.update(Double.POSITIVE_INFINITY);
+        summary.update(Double.NEGATIVE_INFINITY);
+        for (int i = 2; i <= 100; i++) {
+            summary.update(i);
+        }
+
+        assertEquals(102, summary.getCount());
+        assertEquals(50.0, summary.getQuantile(0.5), 50 * 0.01);
+        assertEquals(Double.POSITIVE_INFINITY, summary.getQuantile(1.0));
+    }
+
+    @Test
+    public void testSummaryBuffered() throws InterruptedException {
+        final Summary summary = MetricRegistry.create().createSummary()
+                                              .withBufferedRecording()
+                                              .name("TestBuffered")
+                                              .register();
+
+        int threadsCount = 4;
+        int total = 2000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadsCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < total; i++) {
+                    summary.update(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadsCount * total, summary.getCount());
+        assertEquals(0.0, summary.getQuantile(0.0));
+        assertEquals(total * 0.5, summary.getQuantile(0.5));
+        assertEquals(total * 1.0 - 1, summary.getQuantile(1.0));
+    }
+
+    @Test
+    public void testSummaryBufferedRotation() {
+        final Summary summary = MetricRegistry.create().createSummary()
+                                              .withBufferedRecording()
+                                              .name("TestBufferedRotation")
+                                              .register();
+        for (int i = 0; i < 100; i++) {
+            summary.update(i);
+        }
+
+        // samples buffered before the rotation expire with their window
+        Summary.TimeWindowQuantile quantile = summary.timeWindowQuantile;
+        quantile.lastRotationNs -= quantile.rotateEachNs;
+        assertEquals(Double.NaN, summary.getQuantile(0.5));
+
+        summary.update(7);
+        assertEquals(7.0, summary.getQuantile(0.5));
+    }
+
+    @Test
+    public void testSummaryScheduledRotation() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.enableScheduledRotation();
+        Summary summary = registry.getOrCreateSummary("ScheduledRotation", new double[]{0.5}, 3, Duration.ofHours(3));
+
+        for (int i = 0; i < 100; i++) {
+            summary.update(i);
+        }
+        assertEquals(50.0, summary.getQuantile(0.5));
+
+        Summary.TimeWindowQuantile quantile = summary.timeWindowQuantile;
+        quantile.clock.tick();
+        assertEquals(Double.NaN, summary.getQuantile(0.5));
+        assertEquals(1, quantile.currentWindow);
+
+        summary.update(7);
+        assertEquals(7.0, summary.getQuantile(0.5));
+
+        // windows expired long ago are cleared at once
+        for (int i = 0; i < 10; i++) {
+            quantile.clock.tick();
+        }
+        assertEquals(Double.NaN, summary.getQuantile(0.5));
+        assertEquals(2, quantile.currentWindow);
+    }
+
+    @Test
+    public void testSummaryScheduledRotationAfterRegistration() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.getOrCreateSummary("RotationAfterRegistration");
+        assertThrows(IllegalStateException.class, registry::enableScheduledRotation);
+    }
+
+    @Test
+    public void testSummaryScheduledRotationRelease() {
+        RotationScheduler scheduler = new RotationScheduler();
+        Duration window = Duration.ofHours(1);
+        Summary summary = new Summary(MetricName.parse("RotationRelease"), new double[]{0.5}, window, 1,
+                Double.NaN, false, scheduler);
+        long periodNs = window.toNanos();
+        RotationScheduler.Tick tick = scheduler.getTick(periodNs);
+        assertSame(summary.timeWindowQuantile.clock, tick.get());
+        assertTrue(scheduler.isRunning());
+
+        // the clock is cancelled once the garbage collector enqueues it
+        tick.enqueue();
+        scheduler.releaseCollected();
+        assertFalse(scheduler.isScheduled(periodNs));
+        assertFalse(scheduler.isRunning());
+
+        // or when its tick finds it collected
+        RotationScheduler.Clock clock = scheduler.clock(periodNs);
+        tick = scheduler.getTick(periodNs);
+        assertSame(clock, tick.get());
+        assertTrue(scheduler.isRunning());
+        tick.clear();
+        tick.run();
+        assertFalse(scheduler.isScheduled(periodNs));
+        assertFalse(scheduler.isRunning());
+    }
+
     @Test
     public void testSummarySmallWindow() throws InterruptedException {
         double[] quantiles = new double[]{0.1, 0.2, 0.3};
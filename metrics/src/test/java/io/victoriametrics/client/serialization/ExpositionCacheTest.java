@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpositionCacheTest {
+
+    @Test
+    public void serveCachedExposition() throws IOException {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter counter = registry.getOrCreateCounter("requests_total");
+        counter.inc();
+        ExpositionCache cache = new ExpositionCache(registry, Duration.ofHours(1));
+
+        byte[] first = cache.get();
+        counter.inc();
+
+        assertEquals("requests_total 1\n", new String(first, StandardCharsets.UTF_8));
+        assertSame(first, cache.get());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(cache.getGzip()))) {
+            assertArrayEquals(first, in.readAllBytes());
+        }
+        assertSame(cache.getGzip(), cache.getGzip());
+    }
+
+    @Test
+    public void renderWithoutMinInterval() {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter counter = registry.getOrCreateCounter("requests_total");
+        ExpositionCache cache = new ExpositionCache(registry, Duration.ZERO);
+
+        assertEquals("requests_total 0\n", new String(cache.get(), StandardCharsets.UTF_8));
+        counter.inc();
+        assertEquals("requests_total 1\n", new String(cache.get(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void coalesceConcurrentRenders() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch rendering = new CountDownLatch(1);
+        MetricRegistry registry = MetricRegistry.create();
+        registry.getOrCreateGauge("slow", () -> {
+            rendering.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return (double) renders.incrementAndGet();
+        });
+        ExpositionCache cache = new ExpositionCache(registry, Duration.ofSeconds(10));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            results.add(executor.submit(cache::get));
+            rendering.await();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(cache::get));
+            }
+
+            for (Future<byte[]> result : results) {
+                assertEquals("slow 1.0\n", new String(result.get(), StandardCharsets.UTF_8));
+            }
+            assertEquals(1, renders.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
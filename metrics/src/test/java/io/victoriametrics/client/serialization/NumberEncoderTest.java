@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NumberEncoderTest {
+
+    @Test
+    public void formatLongs() {
+        assertEquals("0", formatLong(0));
+        assertEquals("7", formatLong(7));
+        assertEquals("-42", formatLong(-42));
+        assertEquals("1000000", formatLong(1_000_000));
+        assertEquals(Long.toString(Long.MAX_VALUE), formatLong(Long.MAX_VALUE));
+        assertEquals(Long.toString(Long.MIN_VALUE), formatLong(Long.MIN_VALUE));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong() >> random.nextInt(64);
+            assertEquals(Long.toString(value), formatLong(value));
+        }
+    }
+
+    @Test
+    public void formatDoubles() {
+        assertEquals("0.0", formatDouble(0.0));
+        assertEquals("-0.0", formatDouble(-0.0));
+        assertEquals("1.0", formatDouble(1.0));
+        assertEquals("0.5", formatDouble(0.5));
+        assertEquals("0.1", formatDouble(0.1));
+        assertEquals("0.3", formatDouble(0.3));
+        assertEquals("0.30000000000000004", formatDouble(0.1 + 0.2));
+        assertEquals("123.456", formatDouble(123.456));
+        assertEquals("0.001", formatDouble(0.001));
+        assertEquals("1.0E-4", formatDouble(0.0001));
+        assertEquals("1234567.0", formatDouble(1234567.0));
+        assertEquals("1.0E7", formatDouble(1e7));
+        assertEquals("1.2E7", formatDouble(1.2e7));
+        assertEquals("0.002", formatDouble(0.002));
+        assertEquals("1.7976931348623157E308", formatDouble(Double.MAX_VALUE));
+        assertEquals("4.9E-324", formatDouble(Double.MIN_VALUE));
+        assertEquals("2.2250738585072014E-308", formatDouble(Double.MIN_NORMAL));
+        assertEquals("NaN", formatDouble(Double.NaN));
+        assertEquals("+Inf", formatDouble(Double.POSITIVE_INFINITY));
+        assertEquals("-Inf", formatDouble(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void formatDoublesRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            assertShortestRoundTrip(value);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            assertShortestRoundTrip(random.nextDouble() * 1000);
+            assertShortestRoundTrip(random.nextInt(1_000_000) / 100.0);
+        }
+    }
+
+    private static void assertShortestRoundTrip(double value) {
+        String formatted = formatDouble(value);
+        assertEquals(value, Double.parseDouble(formatted), formatted);
+
+        int digits = significantDigits(formatted);
+        int shortest = shortestDigits(value);
+        assertTrue(digits <= Math.max(shortest, 2), () -> formatted + " is longer than " + shortest + " digits");
+    }
+
+    private static int significantDigits(String formatted) {
+        String mantissa = formatted.split("E")[0].replace("-", "").replace(".", "");
+        mantissa = mantissa.replaceFirst("^0+", "").replaceFirst("0+$", "");
+        return Math.max(mantissa.length(), 1);
+    }
+
+    private static int shortestDigits(double value) {
+        BigDecimal exact = new BigDecimal(value);
+        for (int precision = 1; precision < 17; precision++) {
+            if (exact.round(new MathContext(precision, RoundingMode.HALF_EVEN)).doubleValue() == value) {
+                return precision;
+            }
+        }
+        return 17;
+    }
+
+    private static String formatLong(long value) {
+        byte[] buffer = new byte[NumberEncoder.MAX_LENGTH];
+        return new String(buffer, 0, NumberEncoder.writeLong(buffer, 0, value), StandardCharsets.US_ASCII);
+    }
+
+    private static String formatDouble(double value) {
+        byte[] buffer = new byte[NumberEncoder.MAX_LENGTH + 4];
+        int position = NumberEncoder.writeDouble(buffer, 4, value) - 4;
+        return new String(buffer, 4, position, StandardCharsets.US_ASCII);
+    }
+}
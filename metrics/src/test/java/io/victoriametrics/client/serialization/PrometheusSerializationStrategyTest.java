@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrometheusSerializationStrategyTest {
+
+    @Test
+    public void writeSameOutputIntoWriterAndStream() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.getOrCreateGauge("positive_infinity", () -> Double.POSITIVE_INFINITY);
+        registry.getOrCreateGauge("negative_infinity{a=\"b\"}", () -> Double.NEGATIVE_INFINITY);
+        registry.getOrCreateGauge("not_a_number", () -> Double.NaN);
+        registry.getOrCreateSettableGauge("settable").set(Double.POSITIVE_INFINITY);
+        registry.getOrCreateFloatCounter("float_total").inc(2.0E-3);
+        registry.getOrCreateCounter("requests_total{path=\"/api\"}").inc(42);
+        registry.getOrCreateHistogram("latency_seconds").update(0.25);
+        registry.getOrCreateSummary("infinite_seconds").update(Double.POSITIVE_INFINITY);
+        registry.getOrCreateSummary("empty_seconds");
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.write(out);
+
+        String text = writer.toString();
+        assertEquals(text, out.toString(StandardCharsets.UTF_8));
+        assertTrue(text.contains("positive_infinity +Inf\n"), text);
+        assertTrue(text.contains("negative_infinity{a=\"b\"} -Inf\n"), text);
+        assertTrue(text.contains("not_a_number NaN\n"), text);
+        assertTrue(text.contains("settable +Inf\n"), text);
+        assertTrue(text.contains("float_total 0.002\n"), text);
+        assertTrue(text.contains("infinite_seconds_sum +Inf\n"), text);
+        assertTrue(text.contains("empty_seconds{quantile=\"0.5\"} NaN\n"), text);
+    }
+}
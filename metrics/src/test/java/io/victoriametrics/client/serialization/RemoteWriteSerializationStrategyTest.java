@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import io.victoriametrics.client.metrics.Histogram;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.metrics.Summary;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteWriteSerializationStrategyTest {
+
+    private static final long TIMESTAMP = 1_700_000_000_123L;
+
+    @Test
+    public void encodeCounter() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("requests_total").addLabel("path", "/foo").addLabel("Method", "GET").register().inc(42);
+
+        List<Series> series = decode(write(registry));
+        assertEquals(1, series.size());
+        assertEquals(List.of("Method", "__name__", "path"), series.get(0).labelNames);
+        assertEquals("requests_total{Method=\"GET\",path=\"/foo\"} 42.0", series.get(0).toString());
+        assertEquals(TIMESTAMP, series.get(0).timestamp);
+    }
+
+    @Test
+    public void encodeRawLabelValues() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("built").addLabel("path", "a\"b\\c\nd").register().inc();
+        registry.getOrCreateCounter("parsed{path=\"a\\\"b\\\\c\\nd\"}").inc();
+
+        List<Series> series = decode(write(registry));
+        assertEquals(2, series.size());
+        for (Series s : series) {
+            assertEquals("a\"b\\c\nd", s.labels.get("path"), s.labels.get("__name__"));
+        }
+    }
+
+    @Test
+    public void encodeSameSeriesAsTextExposition() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createFloatCounter().name("bytes_total").register().inc(1.5);
+        registry.createSettableGauge().name("temperature").addLabel("room", "kitchen").register().set(-3.25);
+        registry.createGauge().withSupplier(() -> 7.0).name("threads").register();
+        Histogram histogram = registry.createHistogram().name("duration_seconds").addLabel("path", "/a").register();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.update(i / 100.0);
+        }
+        Summary summary = registry.getOrCreateSummary("size{path=\"/a\"}", new double[]{0.5, 1.0}, 2,
+                Duration.ofMinutes(1));
+        summary.update(10);
+        summary.update(20);
+
+        List<String> expected = new ArrayList<>();
+        StringWriter text = new StringWriter();
+        registry.write(text);
+        for (String line : text.toString().split("\n")) {
+            expected.add(canonical(line));
+        }
+
+        List<String> actual = new ArrayList<>();
+        for (Series series : decode(write(registry))) {
+            actual.add(series.toString());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void reuseEncoders() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+        RemoteWriteSerializationStrategy strategy = new RemoteWriteSerializationStrategy(() -> TIMESTAMP);
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            registry.write(out, strategy);
+            assertEquals(List.of("foo 1.0"), decode(out.toByteArray()).stream().map(Series::toString).toList());
+        }
+    }
+
+    @Test
+    public void splitIntoRequestsAtMetrics() {
+        MetricRegistry registry = MetricRegistry.create();
+        for (int i = 0; i < 100; i++) {
+            registry.createCounter().name("counter_" + i).register().inc(i);
+        }
+        Histogram histogram = registry.createHistogram().name("duration_seconds").register();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.update(i / 100.0);
+        }
+        RemoteWriteSerializationStrategy strategy = new RemoteWriteSerializationStrategy(() -> TIMESTAMP);
+
+        List<String> expected = decode(write(registry)).stream().map(Series::toString).toList();
+        List<byte[]> requests = writeRequests(registry, strategy, 256);
+
+        assertTrue(requests.size() > 1, "requests: " + requests.size());
+        List<String> actual = new ArrayList<>();
+        int histogramRequests = 0;
+        for (byte[] request : requests) {
+            List<Series> series = decode(request);
+            if (series.stream().anyMatch(s -> s.toString().startsWith("duration_seconds"))) {
+                histogramRequests++;
+            }
+            series.forEach(s -> actual.add(s.toString()));
+        }
+        assertEquals(expected, actual);
+        assertEquals(1, histogramRequests);
+
+        List<byte[]> single = writeRequests(registry, strategy, Integer.MAX_VALUE);
+        assertEquals(1, single.size());
+        assertEquals(expected, decode(single.get(0)).stream().map(Series::toString).toList());
+
+        List<byte[]> none = new ArrayList<>();
+        strategy.serialize(List.of(), 256, none::add);
+        assertEquals(List.of(), none);
+        assertThrows(IllegalArgumentException.class, () -> strategy.serialize(List.of(), 0, none::add));
+    }
+
+    private static List<byte[]> writeRequests(MetricRegistry registry, RemoteWriteSerializationStrategy strategy,
+                                              int maxRequestSize) {
+        List<byte[]> requests = new ArrayList<>();
+        registry.write(OutputStream.nullOutputStream(),
+                (metrics, out) -> strategy.serialize(metrics, maxRequestSize, requests::add));
+        return requests;
+    }
+
+    private static byte[] write(MetricRegistry registry) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.write(out, new RemoteWriteSerializationStrategy(() -> TIMESTAMP));
+        return out.toByteArray();
+    }
+
+    /**
+     * Convert a line of text exposition into the format of {@link Series#toString()}.
+     */
+    private static String canonical(String line) {
+        int valueStart = line.lastIndexOf(' ');
+        double value = Double.parseDouble(line.substring(valueStart + 1));
+        String series = line.substring(0, valueStart);
+
+        int labelsStart = series.indexOf('{');
+        if (labelsStart < 0) {
+            return series + " " + value;
+        }
+
+        Map<String, String> labels = new TreeMap<>();
+        for (String label : series.substring(labelsStart + 1, series.length() - 1).split(",")) {
+            String[] parts = label.trim().split("=", 2);
+            labels.put(parts[0], parts[1]);
+        }
+        StringBuilder sb = new StringBuilder(series.substring(0, labelsStart)).append('{');
+        labels.forEach((name, labelValue) -> sb.append(name).append('=').append(labelValue).append(','));
+        sb.setCharAt(sb.length() - 1, '}');
+        return sb.append(' ').append(value).toString();
+    }
+
+    /**
+     * Decompress and decode a {@code WriteRequest}.
+     */
+    private static List<Series> decode(byte[] body) {
+        ByteBuffer request = ByteBuffer.wrap(SnappyTest.decompress(body)).order(ByteOrder.LITTLE_ENDIAN);
+        List<Series> result = new ArrayList<>();
+        while (request.hasRemaining()) {
+            assertEquals(1 << 3 | 2, readVarint(request));
+            ByteBuffer timeSeries = readMessage(request);
+
+            Series series = new Series();
+            while (timeSeries.hasRemaining()) {
+                long tag = readVarint(timeSeries);
+                ByteBuffer message = readMessage(timeSeries);
+                if (tag == (1 << 3 | 2)) {
+                    assertEquals(1 << 3 | 2, readVarint(message));
+                    String name = readString(message);
+                    assertEquals(2 << 3 | 2, readVarint(message));
+                    String value = readString(message);
+                    series.labelNames.add(name);
+                    series.labels.put(name, value);
+                } else {
+                    assertEquals(2 << 3 | 2, tag);
+                    assertEquals(1 << 3 | 1, readVarint(message));
+                    series.value = message.getDouble();
+                    assertEquals(2 << 3, readVarint(message));
+                    series.timestamp = readVarint(message);
+                }
+            }
+            assertEquals(series.labelNames.stream().sorted().toList(), series.labelNames);
+            result.add(series);
+        }
+        return result;
+    }
+
+    private static ByteBuffer readMessage(ByteBuffer buffer) {
+        int length = (int) readVarint(buffer);
+        ByteBuffer message = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(buffer.position() + length);
+        return message;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        ByteBuffer bytes = readMessage(buffer);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get() & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+    }
+
+    private static final class Series {
+        private final List<String> labelNames = new ArrayList<>();
+        private final Map<String, String> labels = new TreeMap<>();
+        private double value;
+        private long timestamp;
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(labels.get("__name__"));
+            if (labels.size() > 1) {
+                sb.append('{');
+                labels.forEach((name, value) -> {
+                    if (!name.equals("__name__")) {
+                        sb.append(name).append("=\"").append(value).append("\",");
+                    }
+                });
+                sb.setCharAt(sb.length() - 1, '}');
+            }
+            return sb.append(' ').append(value).toString();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnappyTest {
+
+    @Test
+    public void compressEmptyAndShortInput() {
+        assertArrayEquals(new byte[]{0}, compress(new byte[0]));
+        assertArrayEquals(new byte[]{3, 2 << 2, 'f', 'o', 'o'}, compress("foo".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void compressRepetitiveInput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sb.append("http_requests_total{path=\"/api/v1/resource/").append(i % 100).append("\"} ").append(i).append('\n');
+        }
+        byte[] input = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = compress(input);
+        assertTrue(compressed.length < input.length / 5, "compressed " + input.length + " into " + compressed.length);
+        assertArrayEquals(input, decompress(compressed));
+    }
+
+    @Test
+    public void compressRandomInput() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            byte[] input = new byte[random.nextInt(200_000)];
+            // mix incompressible bytes with repeated runs of various lengths and offsets
+            for (int j = 0; j < input.length; j++) {
+                int back = 1 + random.nextInt(70_000);
+                input[j] = j >= back && random.nextInt(8) != 0 ? input[j - back / (1 + random.nextInt(50))] : (byte) random.nextInt(4);
+            }
+            assertArrayEquals(input, decompress(compress(input)));
+        }
+    }
+
+    private static byte[] compress(byte[] input) {
+        byte[] output = new byte[Snappy.maxCompressedLength(input.length)];
+        int length = Snappy.compress(input, input.length, output, new int[Snappy.TABLE_SIZE]);
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Decompress the snappy block format.
+     */
+    static byte[] decompress(byte[] input) {
+        int position = 0;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input[position++] & 0xff;
+            length |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                break;
+            }
+        }
+
+        byte[] output = new byte[length];
+        int written = 0;
+        while (position < input.length) {
+            int tag = input[position++] & 0xff;
+            if ((tag & 3) == 0) {
+                int literal = tag >>> 2;
+                if (literal >= 60) {
+                    int bytes = literal - 59;
+                    literal = 0;
+                    for (int i = 0; i < bytes; i++) {
+                        literal |= (input[position++] & 0xff) << (8 * i);
+                    }
+                }
+                literal++;
+                System.arraycopy(input, position, output, written, literal);
+                position += literal;
+                written += literal;
+                continue;
+            }
+
+            int copy;
+            int offset;
+            if ((tag & 3) == 1) {
+                copy = 4 + ((tag >>> 2) & 7);
+                offset = ((tag >>> 5) << 8) | (input[position++] & 0xff);
+            } else if ((tag & 3) == 2) {
+                copy = 1 + (tag >>> 2);
+                offset = (input[position++] & 0xff) | (input[position++] & 0xff) << 8;
+            } else {
+                throw new AssertionError("Unexpected copy with 4-byte offset");
+            }
+
+            assertTrue(offset > 0 && offset <= written, "offset " + offset);
+            for (int i = 0; i < copy; i++, written++) {
+                output[written] = output[written - offset];
+            }
+        }
+
+        assertEquals(length, written);
+        return output;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipOutputStreamTest {
+
+    @Test
+    public void compressReadableByGzipInputStream() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            sb.append("requests_total{path=\"/api/").append(i).append("\"} ").append(i).append('\n');
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (int level : new int[]{Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            // deflaters are reused after the first round
+            for (int round = 0; round < 3; round++) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GzipOutputStream out = GzipOutputStream.open(compressed, level)) {
+                    out.write(data, 0, 1000);
+                    out.write(data[1000]);
+                    out.write(data, 1001, data.length - 1001);
+                }
+
+                assertTrue(compressed.size() < data.length / 4);
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                    assertArrayEquals(data, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compressEmptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GzipOutputStream.open(compressed, Deflater.BEST_SPEED).close();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertTrue(GzipOutputStream.acceptsGzip("gzip"));
+        assertTrue(GzipOutputStream.acceptsGzip("deflate, GZIP;q=0.5, br"));
+        assertTrue(GzipOutputStream.acceptsGzip("x-gzip"));
+        assertFalse(GzipOutputStream.acceptsGzip(null));
+        assertFalse(GzipOutputStream.acceptsGzip(""));
+        assertFalse(GzipOutputStream.acceptsGzip("identity"));
+        assertFalse(GzipOutputStream.acceptsGzip("gzip;q=0"));
+        assertFalse(GzipOutputStream.acceptsGzip("br, gzip; q=0.0"));
+    }
+}
@@ -56,4 +56,24 @@ class MetricNameValidatorTest {
             assertInstanceOf(InvalidMetricNameException.class, exception);
         });
     }
+
+    @Test
+    public void whenLabelValueContainsSeparators_thenAssertionSucceeds() {
+        MetricNameValidator validator = new MetricNameValidator();
+        validator.validate("foo{bar=\"a,b\"}");
+        validator.validate("foo{bar=\"a=b\", baz=\"{}\"}");
+        validator.validate("foo{bar=\"\\\\\"}");
+        validator.validate("foo{ bar =\"baz\" }");
+    }
+
+    @Test
+    public void whenCharactersFollowLabels_thenThrowException() {
+        MetricNameValidator validator = new MetricNameValidator();
+        List<String> invalidMetricNames = Arrays.asList(
+                "foo{bar=\"baz\"}x", "foo{bar=\"baz\"x}", "foo{bar=\"baz\\\"}", "foo bar", "9foo", "foo{9a=\"b\"}"
+        );
+
+        invalidMetricNames.forEach(metricName ->
+                assertThrows(InvalidMetricNameException.class, () -> validator.validate(metricName), metricName));
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.push;
+
+import io.victoriametrics.client.utils.GzipOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * Stream which splits exposition text into gzip-compressed batches.
+ *
+ * <p>Text is compressed as it is written. A batch is completed at the first line end after
+ * its uncompressed size reaches the limit, so lines are never split between batches.</p>
+ */
+final class BatchOutputStream extends OutputStream {
+
+    private final int maxBatchSize;
+    private final int compressionLevel;
+    private final Consumer<byte[]> consumer;
+    private final byte[] single = new byte[1];
+
+    private ByteArrayOutputStream compressed;
+    private GzipOutputStream gzip;
+    private int batchSize;
+
+    /**
+     * @param maxBatchSize Uncompressed size of a batch after which it is completed at the next line end
+     * @param consumer     Consumer of compressed batches
+     */
+    BatchOutputStream(int maxBatchSize, int compressionLevel, Consumer<byte[]> consumer) {
+        this.maxBatchSize = maxBatchSize;
+        this.compressionLevel = compressionLevel;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (gzip == null) {
+                compressed = new ByteArrayOutputStream(Math.max(1024, maxBatchSize / 8));
+                gzip = GzipOutputStream.open(compressed, compressionLevel);
+            }
+
+            if (batchSize < maxBatchSize) {
+                int length = Math.min(end - off, maxBatchSize - batchSize);
+                gzip.write(b, off, length);
+                batchSize += length;
+                off += length;
+                continue;
+            }
+
+            int lineEnd = indexOfLineEnd(b, off, end);
+            int length = (lineEnd < 0 ? end : lineEnd + 1) - off;
+            gzip.write(b, off, length);
+            batchSize += length;
+            off += length;
+            if (lineEnd >= 0) {
+                completeBatch();
+            }
+        }
+    }
+
+    /**
+     * Complete the last batch.
+     */
+    @Override
+    public void close() throws IOException {
+        if (gzip != null) {
+            completeBatch();
+        }
+    }
+
+    /**
+     * Discard the batch in progress without passing it to the consumer.
+     * Batches completed before are not affected.
+     */
+    void abort() {
+        if (gzip != null) {
+            gzip.abort();
+            gzip = null;
+            compressed = null;
+            batchSize = 0;
+        }
+    }
+
+    private void completeBatch() throws IOException {
+        gzip.close();
+        consumer.accept(compressed.toByteArray());
+        gzip = null;
+        compressed = null;
+        batchSize = 0;
+    }
+
+    private static int indexOfLineEnd(byte[] b, int off, int end) {
+        for (int i = off; i < end; i++) {
+            if (b[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.push;
+
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.DeltaExport;
+import io.victoriametrics.client.metrics.Metric;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.serialization.RemoteWriteSerializationStrategy;
+import io.victoriametrics.client.serialization.StreamSerializationStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Push metrics of a registry to the Prometheus text import endpoint of VictoriaMetrics
+ * for processes which can't be scraped.
+ *
+ * <p>On every push the registry is serialized into gzip-compressed batches of limited size,
+ * which are queued and sent in order. A batch which fails with a network error, {@code 429} or {@code 5xx}
+ * is retried with exponential backoff, while new batches keep queueing. A batch rejected with another status
+ * is dropped. When the queue is full, the oldest batches are dropped.</p>
+ *
+ * <p>With {@link Builder#withRemoteWrite()} the registry is pushed to the remote write endpoint instead,
+ * as snappy-compressed protobuf requests of limited size, which are cheaper to encode and to ingest than text.</p>
+ *
+ * <p>With {@link Builder#withChangedOnly(Duration)} a push includes only the metrics which changed since the previous
+ * push, which reduces the traffic of registries with many idle series.</p>
+ *
+ * <p>The client reports its own metrics into the pushed registry: {@code push_requests_total},
+ * {@code push_errors_total}, {@code push_bytes_total}, {@code push_dropped_batches_total}
+ * and {@code push_queue_batches}, labeled with the endpoint {@code url}.</p>
+ *
+ * <blockquote><pre>
+ *  PushClient client = new PushClient.Builder()
+ *          .withMetricRegistry(registry)
+ *          .withUrl("http://victoriametrics:8428")
+ *          .withExtraLabel("job", "worker")
+ *          .build();
+ *  client.start();
+ * </pre></blockquote>
+ */
+public class PushClient implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PushClient.class);
+
+    static final String IMPORT_PATH = "/api/v1/import/prometheus";
+    static final String REMOTE_WRITE_PATH = "/api/v1/write";
+
+    private final MetricRegistry registry;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final RemoteWriteSerializationStrategy remoteWrite;
+    private final DeltaExport delta;
+    private final HttpClient httpClient;
+    private final Duration timeout;
+    private final Duration interval;
+    private final int compressionLevel;
+    private final int maxBatchSize;
+    private final int maxQueueSize;
+    private final long minBackoffNs;
+    private final long maxBackoffNs;
+
+    private final Counter requests;
+    private final Counter errors;
+    private final Counter bytes;
+    private final Counter droppedBatches;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Queue of compressed batches, guarded by {@code this}.
+     */
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+    private volatile int queueSize;
+    private long backoffNs;
+    private boolean retryScheduled;
+    private boolean started;
+    private boolean closed;
+
+    private PushClient(Builder builder, URI uri, String url) {
+        this.registry = builder.registry;
+        this.uri = uri;
+        this.headers = new LinkedHashMap<>(builder.headers);
+        this.remoteWrite = builder.remoteWrite ? new RemoteWriteSerializationStrategy() : null;
+        this.delta = builder.fullRefreshInterval != null ? registry.createDeltaExport(builder.fullRefreshInterval) : null;
+        this.httpClient = builder.httpClient != null
+                ? builder.httpClient
+                : HttpClient.newBuilder().connectTimeout(builder.timeout).build();
+        this.timeout = builder.timeout;
+        this.interval = builder.interval;
+        this.compressionLevel = builder.compressionLevel;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxQueueSize = builder.maxQueueSize;
+        this.minBackoffNs = builder.minBackoff.toNanos();
+        this.maxBackoffNs = builder.maxBackoff.toNanos();
+
+        this.requests = registry.createCounter().name("push_requests_total").addLabel("url", url).register();
+        this.errors = registry.createCounter().name("push_errors_total").addLabel("url", url).register();
+        this.bytes = registry.createCounter().name("push_bytes_total").addLabel("url", url).register();
+        this.droppedBatches = registry.createCounter()
+                                      .name("push_dropped_batches_total")
+                                      .addLabel("url", url)
+                                      .register();
+        registry.createGauge()
+                .withSupplier(() -> (long) queueSize)
+                .name("push_queue_batches")
+                .addLabel("url", url)
+                .register();
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "vm-metrics-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Start pushing metrics periodically with the configured interval.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Push client is closed");
+        }
+        if (started) {
+            return;
+        }
+        started = true;
+
+        long intervalNs = interval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::pushScheduled, intervalNs, intervalNs, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Serialize the registry and send it together with the queued batches on the calling thread.
+     * Batches which fail are kept in the queue.
+     *
+     * @return whether all batches are sent
+     */
+    public synchronized boolean push() {
+        collect();
+        return drain();
+    }
+
+    /**
+     * Stop periodic pushes and push the registry for the last time.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        scheduler.shutdownNow();
+        push();
+    }
+
+    /**
+     * Number of batches waiting to be sent.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    private synchronized void pushScheduled() {
+        try {
+            collect();
+            // with a pending retry the endpoint is backing off, so new batches only queue
+            if (!retryScheduled) {
+                drain();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Unable to push metrics", e);
+        }
+    }
+
+    private synchronized void retry() {
+        retryScheduled = false;
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            logger.error("Unable to push metrics", e);
+        }
+    }
+
+    private void collect() {
+        if (remoteWrite != null) {
+            try {
+                // requests are queued by the strategy instead of being written into the stream
+                StreamSerializationStrategy batches = this::enqueueRemoteWrite;
+                if (delta == null) {
+                    registry.write(OutputStream.nullOutputStream(), batches);
+                } else {
+                    delta.write(OutputStream.nullOutputStream(), batches);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unable to serialize metrics", e);
+            }
+            return;
+        }
+
+        // the last batch is queued only if serialization succeeds, so a failure doesn't push a truncated line
+        BatchOutputStream out = new BatchOutputStream(maxBatchSize, compressionLevel, this::enqueue);
+        try {
+            if (delta == null) {
+                registry.write(out);
+            } else {
+                delta.write(out);
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            logger.error("Unable to serialize metrics", e);
+        }
+    }
+
+    private void enqueueRemoteWrite(Iterable<? extends Metric> metrics, OutputStream ignored) {
+        remoteWrite.serialize(metrics, maxBatchSize, this::enqueue);
+    }
+
+    private void enqueue(byte[] batch) {
+        if (queue.size() == maxQueueSize) {
+            queue.poll();
+            batchDropped();
+        }
+        queue.add(batch);
+        queueSize = queue.size();
+    }
+
+    /**
+     * Send queued batches in order until the queue is empty or a batch fails,
+     * and schedule a retry with backoff on failure.
+     */
+    private boolean drain() {
+        while (!queue.isEmpty()) {
+            byte[] batch = queue.peek();
+            Result result = send(batch);
+            if (result == Result.RETRY) {
+                backoffNs = backoffNs == 0 ? minBackoffNs : Math.min(backoffNs * 2, maxBackoffNs);
+                if (started && !closed && !retryScheduled) {
+                    retryScheduled = true;
+                    scheduler.schedule(this::retry, backoffNs, TimeUnit.NANOSECONDS);
+                }
+                return false;
+            }
+
+            queue.poll();
+            queueSize = queue.size();
+            if (result == Result.REJECTED) {
+                batchDropped();
+            }
+        }
+
+        backoffNs = 0;
+        return true;
+    }
+
+    private void batchDropped() {
+        droppedBatches.inc();
+        // changes in the dropped batch are sent with the next push
+        if (delta != null) {
+            delta.requestFullRefresh();
+        }
+    }
+
+    private Result send(byte[] batch) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                                                 .timeout(timeout)
+                                                 .POST(HttpRequest.BodyPublishers.ofByteArray(batch));
+        if (remoteWrite != null) {
+            request.header("Content-Type", RemoteWriteSerializationStrategy.CONTENT_TYPE)
+                   .header("Content-Encoding", RemoteWriteSerializationStrategy.CONTENT_ENCODING)
+                   .header("X-Prometheus-Remote-Write-Version", RemoteWriteSerializationStrategy.VERSION);
+        } else {
+            request.header("Content-Type", "text/plain")
+                   .header("Content-Encoding", "gzip");
+        }
+        headers.forEach(request::header);
+
+        requests.inc();
+        try {
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                bytes.inc(batch.length);
+                return Result.SENT;
+            }
+
+            errors.inc();
+            if (status == 429 || status / 100 == 5) {
+                logger.warn("Unable to push metrics to {}, status {}: {}", uri, status, response.body());
+                return Result.RETRY;
+            }
+            logger.error("Metrics are rejected by {}, status {}: {}", uri, status, response.body());
+            return Result.REJECTED;
+        } catch (IOException e) {
+            errors.inc();
+            logger.warn("Unable to push metrics to {}: {}", uri, e.toString());
+            return Result.RETRY;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.inc();
+            return Result.RETRY;
+        }
+    }
+
+    private enum Result {
+        SENT,
+        RETRY,
+        REJECTED
+    }
+
+    public static class Builder {
+        private MetricRegistry registry;
+        private String url;
+        private final List<String> extraLabels = new ArrayList<>();
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private HttpClient httpClient;
+        private Duration interval = Duration.ofSeconds(10);
+        private Duration timeout = Duration.ofSeconds(10);
+        private int compressionLevel = Deflater.BEST_SPEED;
+        private int maxBatchSize = 4 * 1024 * 1024;
+        private int maxQueueSize = 64;
+        private Duration minBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(1);
+        private boolean remoteWrite;
+        private Duration fullRefreshInterval;
+
+        /**
+         * Push to the Prometheus remote write endpoint {@code /api/v1/write} instead of the text import endpoint.
+         * {@link #withMaxBatchSize(int)} limits the uncompressed size of a request, which is completed
+         * after the metric at which it reaches the limit. {@link #withCompressionLevel(int)} doesn't apply.
+         */
+        public Builder withRemoteWrite() {
+            this.remoteWrite = true;
+            return this;
+        }
+
+        /**
+         * Push only metrics which changed since the previous push, and all metrics once per
+         * {@code fullRefreshInterval} or after a batch is dropped.
+         *
+         * @see io.victoriametrics.client.metrics.DeltaExport
+         */
+        public Builder withChangedOnly(Duration fullRefreshInterval) {
+            this.fullRefreshInterval = fullRefreshInterval;
+            return this;
+        }
+
+        public Builder withMetricRegistry(MetricRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Set the base URL of VictoriaMetrics, e.g. {@code http://victoriametrics:8428}
+         * or {@code http://vminsert:8480/insert/0/prometheus}. The path of the endpoint is appended to it.
+         */
+        public Builder withUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * Add a label to all pushed series.
+         */
+        public Builder withExtraLabel(String name, String value) {
+            this.extraLabels.add(name + "=" + value);
+            return this;
+        }
+
+        /**
+         * Add a header to push requests, e.g. {@code Authorization}.
+         */
+        public Builder withHeader(String name, String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        public Builder withHttpClient(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        public Builder withInterval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Set the timeout of a push request.
+         */
+        public Builder withTimeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder withCompressionLevel(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Set the uncompressed size of a batch in bytes, after which the batch is completed at the next line end,
+         * or after the current metric with remote write.
+         */
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Set the number of batches to keep for retries.
+         */
+        public Builder withMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Set the delays before the first and the longest retry.
+         */
+        public Builder withBackoff(Duration minBackoff, Duration maxBackoff) {
+            this.minBackoff = minBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public PushClient build() {
+            Objects.requireNonNull(registry, "registry is null");
+            Objects.requireNonNull(url, "url is null");
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            if (maxBatchSize <= 0 || maxQueueSize <= 0) {
+                throw new IllegalArgumentException("Batch and queue sizes must be positive");
+            }
+            if (minBackoff.isNegative() || minBackoff.isZero() || maxBackoff.compareTo(minBackoff) < 0) {
+                throw new IllegalArgumentException("Invalid backoff " + minBackoff + "..." + maxBackoff);
+            }
+
+            String path = remoteWrite ? REMOTE_WRITE_PATH : IMPORT_PATH;
+            URI base = URI.create(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+            StringBuilder query = new StringBuilder();
+            for (String extraLabel : extraLabels) {
+                query.append(query.length() == 0 ? "?" : "&")
+                     .append("extra_label=")
+                     .append(URLEncoder.encode(extraLabel, StandardCharsets.UTF_8));
+            }
+
+            try {
+                URI endpoint = new URI(base.getScheme(), null, base.getHost(), base.getPort(),
+                        base.getPath() + path, null, null);
+                return new PushClient(this, URI.create(base + path + query), endpoint.toString());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid url " + url, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2024 Victoria Metrics Inc.
+ */
+
+package io.victoriametrics.client.push;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.victoriametrics.client.metrics.Counter;
+import io.victoriametrics.client.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PushClientTest {
+
+    private HttpServer server;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Integer> statuses = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void pushGzippedText() throws IOException {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("requests_total").addLabel("path", "/foo").register().inc(42);
+
+        try (PushClient client = builder(registry).withExtraLabel("job", "a b").build()) {
+            assertTrue(client.push());
+        }
+
+        Request request = requests.get(0);
+        assertEquals("POST", request.method);
+        assertEquals(PushClient.IMPORT_PATH, request.path);
+        assertEquals("extra_label=job%3Da+b", request.query);
+        assertEquals("gzip", request.contentEncoding);
+        assertEquals("secret", request.authorization);
+        assertTrue(request.body.contains("requests_total{path=\"/foo\"} 42\n"), request.body);
+    }
+
+    @Test
+    void pushRemoteWrite() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("requests_total").addLabel("path", "/foo").register().inc(42);
+
+        PushClient client = builder(registry).withRemoteWrite().build();
+        assertTrue(client.push());
+
+        assertEquals(1, requests.size());
+        Request request = requests.get(0);
+        assertEquals(PushClient.REMOTE_WRITE_PATH, request.path);
+        assertEquals("application/x-protobuf", request.contentType);
+        assertEquals("snappy", request.contentEncoding);
+        assertTrue(request.raw.length > 0);
+        assertTrue(serialize(registry).contains("push_requests_total{url=\"http://localhost:" + port() + "/api/v1/write\"} 1\n"));
+    }
+
+    @Test
+    void splitRemoteWriteIntoBatches() {
+        MetricRegistry registry = MetricRegistry.create();
+        for (int i = 0; i < 100; i++) {
+            registry.createCounter().name("counter_" + i).register().inc(i);
+        }
+
+        PushClient client = builder(registry).withRemoteWrite().withMaxBatchSize(256).build();
+        assertTrue(client.push());
+
+        assertTrue(requests.size() > 1, "requests: " + requests.size());
+        for (Request request : requests) {
+            assertEquals(PushClient.REMOTE_WRITE_PATH, request.path);
+            assertEquals("snappy", request.contentEncoding);
+            assertTrue(request.raw.length > 0);
+        }
+        assertTrue(serialize(registry).contains(
+                "push_requests_total{url=\"http://localhost:" + port() + "/api/v1/write\"} " + requests.size() + "\n"));
+    }
+
+    @Test
+    void pushChangedOnly() {
+        MetricRegistry registry = MetricRegistry.create();
+        Counter foo = registry.createCounter().name("foo").register();
+        registry.createCounter().name("bar").register().inc();
+
+        PushClient client = builder(registry).withChangedOnly(Duration.ofHours(1)).build();
+        assertTrue(client.push());
+        assertTrue(requests.get(0).body.contains("foo 0\n"));
+        assertTrue(requests.get(0).body.contains("bar 1\n"));
+
+        foo.inc();
+        assertTrue(client.push());
+        assertTrue(requests.get(1).body.contains("foo 1\n"));
+        assertFalse(requests.get(1).body.contains("bar"), requests.get(1).body);
+    }
+
+    @Test
+    void splitIntoBatchesAtLineEnds() throws IOException {
+        MetricRegistry registry = MetricRegistry.create();
+        for (int i = 0; i < 100; i++) {
+            registry.createCounter().name("counter_" + i).register().inc(i);
+        }
+        PushClient client = builder(registry).withMaxBatchSize(256).build();
+        String expected = serialize(registry);
+        assertTrue(client.push());
+
+        assertTrue(requests.size() > 1, "requests: " + requests.size());
+        StringBuilder pushed = new StringBuilder();
+        for (Request request : requests) {
+            assertTrue(request.body.endsWith("\n"), request.body);
+            pushed.append(request.body);
+        }
+        assertEquals(expected, pushed.toString());
+    }
+
+    @Test
+    void keepBatchesUntilEndpointRecovers() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+
+        statuses.add(503);
+        statuses.add(429);
+        PushClient client = builder(registry).build();
+        assertFalse(client.push());
+        assertEquals(1, client.getQueueSize());
+        assertFalse(client.push());
+        assertEquals(2, client.getQueueSize());
+        assertTrue(client.push());
+        assertEquals(0, client.getQueueSize());
+
+        // the failed batch is sent again, then the new ones in order
+        assertEquals(5, requests.size());
+        assertEquals(requests.get(0).body, requests.get(1).body);
+        assertEquals(requests.get(1).body, requests.get(2).body);
+
+        String text = serialize(registry);
+        assertTrue(text.contains("push_requests_total{url=\"http://localhost:" + port() + "/api/v1/import/prometheus\"} 5\n"), text);
+        assertTrue(text.contains("push_errors_total{url=\"http://localhost:" + port() + "/api/v1/import/prometheus\"} 2\n"), text);
+        assertTrue(text.contains("push_queue_batches{url=\"http://localhost:" + port() + "/api/v1/import/prometheus\"} 0.0\n"), text);
+    }
+
+    @Test
+    void dropRejectedBatches() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+
+        statuses.add(400);
+        PushClient client = builder(registry).build();
+        assertTrue(client.push());
+        assertEquals(0, client.getQueueSize());
+        assertTrue(serialize(registry).contains("push_dropped_batches_total{url=\"http://localhost:" + port() + "/api/v1/import/prometheus\"} 1\n"));
+    }
+
+    @Test
+    void dropOldestBatchesWhenQueueIsFull() {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+
+        for (int i = 0; i < 5; i++) {
+            statuses.add(500);
+        }
+        PushClient client = builder(registry).withMaxQueueSize(2).build();
+        for (int i = 0; i < 4; i++) {
+            assertFalse(client.push());
+        }
+        assertEquals(2, client.getQueueSize());
+        assertTrue(serialize(registry).contains("push_dropped_batches_total{url=\"http://localhost:" + port() + "/api/v1/import/prometheus\"} 2\n"));
+    }
+
+    @Test
+    void retryWithBackoff() throws Exception {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+
+        statuses.add(503);
+        statuses.add(503);
+        try (PushClient client = builder(registry)
+                .withInterval(Duration.ofHours(1))
+                .withBackoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .build()) {
+            client.start();
+            assertFalse(client.push());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (client.getQueueSize() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, client.getQueueSize());
+            assertEquals(3, requests.size());
+        }
+    }
+
+    @Test
+    void pushPeriodically() throws Exception {
+        MetricRegistry registry = MetricRegistry.create();
+        registry.createCounter().name("foo").register().inc();
+
+        try (PushClient client = builder(registry).withInterval(Duration.ofMillis(10)).build()) {
+            client.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (requests.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue(requests.size() >= 3, "requests: " + requests.size());
+    }
+
+    @Test
+    void invalidConfiguration() {
+        MetricRegistry registry = MetricRegistry.create();
+        assertThrows(NullPointerException.class, () -> new PushClient.Builder().withMetricRegistry(registry).build());
+        assertThrows(IllegalArgumentException.class, () -> builder(registry).withInterval(Duration.ZERO).build());
+        assertThrows(IllegalArgumentException.class, () -> builder(registry).withMaxQueueSize(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> builder(registry).withBackoff(Duration.ofSeconds(2), Duration.ofSeconds(1)).build());
+    }
+
+    private PushClient.Builder builder(MetricRegistry registry) {
+        return new PushClient.Builder()
+                .withMetricRegistry(registry)
+                .withUrl("http://localhost:" + port() + "/")
+                .withHeader("Authorization", "secret");
+    }
+
+    private int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Test
+    void discardBatchInProgressOnAbort() throws IOException {
+        List<byte[]> batches = new ArrayList<>();
+        BatchOutputStream out = new BatchOutputStream(4, Deflater.DEFAULT_COMPRESSION, batches::add);
+        out.write("foo 1\nbar".getBytes(StandardCharsets.UTF_8));
+        out.abort();
+        out.close();
+
+        assertEquals(1, batches.size());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(batches.get(0)))) {
+            assertEquals("foo 1\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String serialize(MetricRegistry registry) {
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        return writer.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                in.transferTo(body);
+            }
+        }
+        requests.add(new Request(exchange, raw, body.toString(StandardCharsets.UTF_8)));
+
+        Integer status = statuses.poll();
+        exchange.sendResponseHeaders(status != null ? status : 204, -1);
+        exchange.close();
+    }
+
+    private static final class Request {
+        private final String method;
+        private final String path;
+        private final String query;
+        private final String contentType;
+        private final String contentEncoding;
+        private final String authorization;
+        private final byte[] raw;
+        private final String body;
+
+        private Request(HttpExchange exchange, byte[] raw, String body) {
+            this.method = exchange.getRequestMethod();
+            this.path = exchange.getRequestURI().getPath();
+            this.query = exchange.getRequestURI().getRawQuery();
+            this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            this.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            this.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            this.raw = raw;
+            this.body = body;
+        }
+    }
+}
@@ -5,15 +5,25 @@
 package io.victoriametrics.client.springboot;
 
 import io.victoriametrics.client.metrics.MetricRegistry;
+import io.victoriametrics.client.serialization.ExpositionCache;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
 
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 
 /**
  * @Endpoint to expose metrics.
  *
+ * <p>Metrics are exposed as {@code text/plain}, so responses are gzip-compressed for clients sending
+ * {@code Accept-Encoding: gzip} when compression of the web server is enabled with
+ * {@code server.compression.enabled=true}.</p>
+ *
+ * <p>With a positive minimum render interval, set by {@code management.endpoint.victoriametrics.min-render-interval},
+ * concurrent and repeated scrapes within the interval are served from an {@link ExpositionCache}.</p>
+ *
  * @author Valery Kantor
  */
 @Endpoint(id = "victoriametrics")
@@ -21,12 +31,26 @@ public class VictoriaMetricsEndpoint {
 
     private final MetricRegistry metricRegistry;
 
+    private final ExpositionCache cache;
+
     public VictoriaMetricsEndpoint(MetricRegistry metricRegistry) {
+        this(metricRegistry, Duration.ZERO);
+    }
+
+    /**
+     * @param minRenderInterval Minimum interval between renders of the registry, zero disables caching
+     */
+    public VictoriaMetricsEndpoint(MetricRegistry metricRegistry, Duration minRenderInterval) {
         this.metricRegistry = metricRegistry;
+        this.cache = minRenderInterval.isZero() ? null : new ExpositionCache(metricRegistry, minRenderInterval);
     }
 
-    @ReadOperation
+    @ReadOperation(produces = "text/plain; version=0.0.4; charset=utf-8")
     public String metrics() {
+        if (cache != null) {
+            return new String(cache.get(), StandardCharsets.UTF_8);
+        }
+
         StringWriter writer = new StringWriter();
         metricRegistry.write(writer);
         return writer.toString();
@@ -5,9 +5,12 @@
 package io.victoriametrics.client.springboot;
 
 import io.victoriametrics.client.metrics.MetricRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * @author Valery Kantor
  */
@@ -15,8 +18,9 @@ import org.springframework.context.annotation.Configuration;
 public class VictoriaMetricsEndpointConfiguration {
 
     @Bean
-    public VictoriaMetricsEndpoint victoriaMetricsEndpoint(MetricRegistry metricRegistry) {
-        return new VictoriaMetricsEndpoint(metricRegistry);
+    public VictoriaMetricsEndpoint victoriaMetricsEndpoint(MetricRegistry metricRegistry,
+            @Value("${management.endpoint.victoriametrics.min-render-interval:0s}") Duration minRenderInterval) {
+        return new VictoriaMetricsEndpoint(metricRegistry, minRenderInterval);
     }
 
     @Bean